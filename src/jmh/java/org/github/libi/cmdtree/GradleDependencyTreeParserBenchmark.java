@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.cmdtree;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.github.libi.cmdtree.GradleDependencyTreeParser.Marker;
+import org.github.libi.services.dgraph.Artifact;
+import org.github.libi.services.dgraph.DGraphTreeLineListener;
+import org.github.libi.services.dgraph.DependencyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of reading gradle dependencies task output: old line reader splitting output into
+ * strings, the buffer parser alone, and the buffer parser building a graph as during scan.
+ * Report size is printed in setup, so time per operation gives MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GradleDependencyTreeParserBenchmark {
+
+  private static final String[] CONFIGURATIONS = {"compileClasspath", "runtimeClasspath",
+      "testCompileClasspath", "testRuntimeClasspath"};
+
+  @Param({"200000"})
+  private int lines;
+
+  private String report;
+
+  private final Map<String, Artifact> projects = new HashMap<>();
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < 20; i++) {
+      projects.put(":module" + i, new Artifact("org.libi", "module" + i));
+    }
+    var random = new Random(42);
+    var sb = new StringBuilder();
+    var count = 0;
+    while (count < lines) {
+      for (var configuration : CONFIGURATIONS) {
+        sb.append(configuration).append(" - Classpath of source set 'main'.\n");
+        var level = 1;
+        for (int i = 0; i < lines / CONFIGURATIONS.length / 4 && count < lines; i++, count++) {
+          level = Math.max(1, Math.min(level + random.nextInt(3) - 1, 8));
+          sb.append("|    ".repeat(level - 1)).append(random.nextBoolean() ? "+--- " : "\\--- ");
+          var n = random.nextInt(2000);
+          if (n < 20) {
+            sb.append("project :module").append(n).append('\n');
+            continue;
+          }
+          sb.append("org.group").append(n % 100).append(":artifact").append(n)
+              .append(":1.").append(n % 10).append(".0");
+          var marker = random.nextInt(10);
+          sb.append(marker < 3 ? " (*)\n" : marker == 3 ? " (c)\n" : "\n");
+        }
+        sb.append('\n');
+      }
+    }
+    report = sb.toString();
+    System.out.printf("%nReport of %d lines, %.1f MB%n", lines, report.length() / 1e6);
+  }
+
+  @Benchmark
+  public void lineReader(Blackhole blackhole) {
+    var reader = new GradleCommandTreeReader(
+        (treeLevel, text) -> blackhole.consume(text));
+    reader.readLines(new BufferedReader(new StringReader(report)).lines());
+  }
+
+  @Benchmark
+  public void parser(Blackhole blackhole) throws IOException {
+    var parser = new GradleDependencyTreeParser(new GradleDependencyTreeParser.Listener() {
+      @Override
+      public void onConfiguration(String name) {
+        blackhole.consume(name);
+      }
+
+      @Override
+      public void onDependency(int treeLevel, String id, Marker marker) {
+        blackhole.consume(id);
+      }
+
+      @Override
+      public void onProject(int treeLevel, String path, Marker marker) {
+        blackhole.consume(path);
+      }
+    });
+    parser.parse(new StringReader(report));
+  }
+
+  @Benchmark
+  public DependencyGraph parserIntoGraph() throws IOException {
+    var graph = new DependencyGraph();
+    var listener = new DGraphTreeLineListener(graph);
+    listener.setProjectName2ArtifactDict(projects);
+    listener.addArtifact(new Artifact("org.libi", "root"));
+    new GradleDependencyTreeParser(listener).parse(new StringReader(report));
+    return graph;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.Random;
+
+/**
+ * Random dependency graphs for benchmarks. Dependencies mostly go from artifact to artifacts with
+ * higher numbers, and one in a hundred goes back, so the graph has some cycles.
+ */
+public class BenchmarkGraphs {
+
+  public static DependencyGraph random(int vertices, int edgesPerVertex, long seed) {
+    var random = new Random(seed);
+    var graph = new DependencyGraph();
+    var artifacts = new Artifact[vertices];
+    for (int i = 0; i < vertices; i++) {
+      artifacts[i] = graph.addArtifact(new Artifact(artifactId(i)));
+      artifacts[i].setLibrary(i % 10 != 0);
+    }
+    for (int i = 0; i < vertices; i++) {
+      for (int e = 0; e < edgesPerVertex; e++) {
+        var j = random.nextInt(100) == 0
+            ? random.nextInt(i + 1)
+            : i + 1 + random.nextInt(Math.max(1, Math.min(1000, vertices - i - 1)));
+        if (j >= vertices || j == i) {
+          continue;
+        }
+        var dependency = graph.addDependency(artifacts[i], artifacts[j]);
+        dependency.setType(
+            random.nextBoolean() ? Dependency.Type.API : Dependency.Type.IMPLEMENTATION);
+        dependency.addClasspath(DependencyCategory.COMPILE_CLASSPATH);
+        if (random.nextInt(4) != 0) {
+          dependency.addClasspath(DependencyCategory.RUNTIME_CLASSPATH);
+        }
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Returns id of artifact with given number in random graphs.
+   */
+  public static String artifactId(int i) {
+    return "org.group" + i % 500 + ":artifact" + i;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.jgrapht.Graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Transitive flows of {@link DependencyFlow} compared with the former traversal, which took work
+ * from a hash set and streamed edges of every visited artifact.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DependencyFlowBenchmark {
+
+  private static final Predicate<Artifact> NO_STOP = artifact -> false;
+
+  @Param({"100000"})
+  private int vertices;
+
+  @Param({"5"})
+  private int edgesPerVertex;
+
+  private DependencyGraph graph;
+
+  private List<Artifact> sources;
+
+  @Setup
+  public void setUp() {
+    graph = BenchmarkGraphs.random(vertices, edgesPerVertex, 42);
+    graph.freeze();
+    graph.getSccIndex();
+    var random = new Random(7);
+    var artifacts = new ArrayList<>(graph.getGraph().vertexSet());
+    sources = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      sources.add(artifacts.get(random.nextInt(artifacts.size())));
+    }
+  }
+
+  @Benchmark
+  public Set<Artifact> legacyFlowOutgoing() {
+    return legacyFlow(graph.getGraph(), sources, NO_STOP, true);
+  }
+
+  @Benchmark
+  public Set<Artifact> legacyFlowIncoming() {
+    return legacyFlow(graph.getGraph(), sources, NO_STOP, false);
+  }
+
+  @Benchmark
+  public Set<Artifact> bitsetFlowOutgoing() {
+    return new DependencyFlow(graph).flowOutgoing(sources, NO_STOP);
+  }
+
+  @Benchmark
+  public Set<Artifact> bitsetFlowIncoming() {
+    return new DependencyFlow(graph).flowIncoming(sources, NO_STOP);
+  }
+
+  @Benchmark
+  public Set<Artifact> sccFlowOutgoing() {
+    return new DependencyFlow(graph).flowOutgoing(sources);
+  }
+
+  @Benchmark
+  public Set<Artifact> sccFlowIncoming() {
+    return new DependencyFlow(graph).flowIncoming(sources);
+  }
+
+  /**
+   * Traversal as done by DependencyFlow before the bitset BFS.
+   */
+  private static Set<Artifact> legacyFlow(Graph<Artifact, Dependency> graph,
+      Collection<Artifact> artifacts, Predicate<Artifact> stopCondition, boolean outgoing) {
+    Set<Artifact> visited = new HashSet<>();
+    Set<Artifact> toCheck = new HashSet<>(artifacts);
+    Function<Dependency, Artifact> neighbour =
+        outgoing ? graph::getEdgeTarget : graph::getEdgeSource;
+    while (!toCheck.isEmpty()) {
+      var current = toCheck.iterator().next();
+      toCheck.remove(current);
+      visited.add(current);
+      (outgoing ? graph.outgoingEdgesOf(current) : graph.incomingEdgesOf(current)).stream()
+          .map(neighbour)
+          .filter(Predicate.not(stopCondition))
+          .filter(Predicate.not(visited::contains))
+          .forEach(toCheck::add);
+    }
+    return visited;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading and saving graph in json file, compared with binary file. Heap retained by the last
+ * loaded graph is printed after every iteration, and allocation is reported by JMH gc profiler
+ * (add {@code profilers = ['gc']} to jmh block of build script).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonGraphFileBenchmark {
+
+  @Param({"100000"})
+  private int vertices;
+
+  @Param({"5"})
+  private int edgesPerVertex;
+
+  private DependencyGraph graph;
+
+  private File dir;
+
+  private File jsonFile;
+
+  private File binaryFile;
+
+  private DependencyGraph loaded;
+
+  @Setup
+  public void setUp() throws IOException {
+    graph = BenchmarkGraphs.random(vertices, edgesPerVertex, 42);
+    dir = Files.createTempDirectory("libi-jmh").toFile();
+    jsonFile = new File(dir, "graph.json");
+    binaryFile = new File(dir, "graph.libi");
+    JsonGraphFile.write(graph, jsonFile);
+    BinaryGraphFile.write(graph, binaryFile);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(jsonFile.toPath());
+    Files.deleteIfExists(binaryFile.toPath());
+    Files.deleteIfExists(dir.toPath());
+  }
+
+  @TearDown(Level.Iteration)
+  public void printRetainedHeap() {
+    if (loaded == null) {
+      return;
+    }
+    var withGraph = usedHeap();
+    loaded = null;
+    var withoutGraph = usedHeap();
+    System.out.printf("%nHeap retained by loaded graph: %d MB%n",
+        (withGraph - withoutGraph) >> 20);
+  }
+
+  @Benchmark
+  public DependencyGraph loadJson() throws IOException {
+    loaded = JsonGraphFile.read(jsonFile);
+    return loaded;
+  }
+
+  @Benchmark
+  public DependencyGraph loadBinary() throws IOException {
+    loaded = BinaryGraphFile.read(binaryFile);
+    return loaded;
+  }
+
+  @Benchmark
+  public void saveJson() throws IOException {
+    JsonGraphFile.write(graph, jsonFile);
+  }
+
+  @Benchmark
+  public void saveBinary() throws IOException {
+    BinaryGraphFile.write(graph, binaryFile);
+  }
+
+  private static long usedHeap() {
+    var runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
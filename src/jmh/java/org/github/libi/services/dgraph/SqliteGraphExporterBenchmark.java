@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Export of 500k dependencies graph to SQLite database, and query of transitive dependencies of
+ * one artifact through reachability view seeded from reachability_start table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqliteGraphExporterBenchmark {
+
+  @Param({"100000"})
+  private int vertices;
+
+  @Param({"5"})
+  private int edgesPerVertex;
+
+  private DependencyGraph graph;
+
+  private File dir;
+
+  private File exportFile;
+
+  private File queryFile;
+
+  private Connection connection;
+
+  @Setup
+  public void setUp() throws IOException, SQLException {
+    graph = BenchmarkGraphs.random(vertices, edgesPerVertex, 42);
+    dir = Files.createTempDirectory("libi-jmh").toFile();
+    exportFile = new File(dir, "export.db");
+    queryFile = new File(dir, "query.db");
+    SqliteGraphExporter.export(graph, queryFile);
+    connection = DriverManager.getConnection("jdbc:sqlite:" + queryFile.getPath());
+    var start = BenchmarkGraphs.artifactId(vertices / 2);
+    try (var statement = connection.createStatement()) {
+      statement.execute("INSERT INTO reachability_start"
+          + " SELECT id FROM artifact WHERE artifact_id = '" + start + "'");
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException, SQLException {
+    connection.close();
+    Files.deleteIfExists(exportFile.toPath());
+    Files.deleteIfExists(queryFile.toPath());
+    Files.deleteIfExists(dir.toPath());
+  }
+
+  @Benchmark
+  public void export() throws IOException {
+    SqliteGraphExporter.export(graph, exportFile);
+  }
+
+  @Benchmark
+  public int reachability() throws SQLException {
+    try (var statement = connection.createStatement();
+        var result = statement.executeQuery("SELECT count(*) FROM reachability")) {
+      result.next();
+      return result.getInt(1);
+    }
+  }
+}
@@ -9,10 +9,11 @@ package org.github.libi.cli;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Comparator;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.Setter;
@@ -22,6 +23,9 @@ import org.github.libi.services.dgraph.Dependency;
 import org.github.libi.services.dgraph.DependencyGraph;
 import org.github.libi.services.dgraph.DependencyGraphOps;
 import org.github.libi.services.dgraph.DependencyGraphService;
+import org.github.libi.services.dgraph.GraphDiff;
+import org.github.libi.services.dgraph.ScanMode;
+import org.github.libi.services.dgraph.ScanOptions;
 import org.github.libi.services.extapp.GraphVizService;
 import org.github.libi.services.extapp.ImageViewerService;
 import org.github.libi.services.libiel.LibiELService;
@@ -61,19 +65,83 @@ public class DependencyGraphCommand {
   @ShellMethod("Scan directories to create dependency graph")
   public void scanDir(
       Set<String> dirs,
-      String graph) {
-    var dgraph = dependencyGraphService.buildDependencyGraphUsingGradlew(dirs);
-    dependencyGraphService.saveGraph(dgraph, new File("graphs/" + graph + ".json"));
+      String graph,
+      @ShellOption(defaultValue = "TASKS") ScanMode mode,
+      @ShellOption(defaultValue = "1") int threads,
+      boolean batched,
+      boolean incremental,
+      boolean cache,
+      @ShellOption(defaultValue = "3") int depth,
+      boolean history) {
+    dependencyGraphService.scanDir(dirs, graph,
+        ScanOptions.builder()
+            .mode(mode)
+            .threads(threads)
+            .batched(batched)
+            .incremental(incremental)
+            .cache(cache)
+            .depth(depth)
+            .history(history)
+            .build());
   }
 
   @ShellMethod("Load dependency graph")
   public void load(
       String graph) {
-    dependencyGraphService.loadGraph(new File("graphs/" + graph + ".json"));
-    System.out.printf(
-        "Loaded graph with %d artifacts.\n", dependencyGraphService.getWorkingGraph().getGraph()
-            .vertexSet()
-            .size());
+    var kept = dependencyGraphService.loadGraph(graph);
+    var graphVersion = dependencyGraphService.getWorkingGraphVersion();
+    System.out.printf("%s graph with %d artifacts (version %d).\n", kept ? "Switched to" : "Loaded",
+        graphVersion.getGraph().getGraph().vertexSet().size(), graphVersion.getVersion());
+  }
+
+  @ShellMethod("List versions in graph history")
+  public void history(
+      String graph) {
+    var graphHistory = dependencyGraphService.getGraphHistory(graph);
+    var dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    graphHistory.getVersions().forEach(version -> {
+      var stats = graphHistory.getDeltaStats(version.getVersion());
+      System.out.printf("%4d  %s  artifacts +%d -%d, dependencies +%d -%d%s\n",
+          version.getVersion(), dateFormat.format(new Date(version.getTime())),
+          stats.getAddedArtifacts(), stats.getRemovedArtifacts(),
+          stats.getAddedDependencies(), stats.getRemovedDependencies(),
+          version.isCheckpoint() ? "  (checkpoint)" : "");
+    });
+  }
+
+  @ShellMethod("Load version from graph history")
+  public void loadVersion(
+      String graph,
+      int version) {
+    dependencyGraphService.loadGraphVersion(graph, version);
+    System.out.printf("Loaded version %d of graph %s with %d artifacts.\n", version, graph,
+        dependencyGraphService.getWorkingGraph().getGraph().vertexSet().size());
+  }
+
+  @ShellMethod("Save working graph")
+  public void save(
+      String graph) {
+    var file = dependencyGraphService.getGraphFile(graph);
+    dependencyGraphService.saveGraph(dependencyGraphService.getWorkingGraph(), file);
+    System.out.println("Saved working graph in " + file);
+  }
+
+  @ShellMethod("Export working graph to SQLite database")
+  public void exportSql(
+      String file) {
+    var graph = dependencyGraphService.getWorkingGraph();
+    dependencyGraphService.sqlExport(graph, new File(file));
+    System.out.printf("Exported %d artifacts and %d dependencies to %s\n",
+        graph.getGraph().vertexSet().size(), graph.getGraph().edgeSet().size(), file);
+  }
+
+  @ShellMethod("List graphs kept in memory")
+  public void graphs() {
+    var working = dependencyGraphService.getWorkingGraphVersion();
+    dependencyGraphService.getLoadedGraphs().forEach(graphVersion ->
+        System.out.printf("%s %s : %d artifacts (version %d)\n",
+            graphVersion == working ? "*" : " ", graphVersion.getName(),
+            graphVersion.getGraph().getGraph().vertexSet().size(), graphVersion.getVersion()));
   }
 
   @ShellMethod("Set color for artifacts filtered by expression")
@@ -128,16 +196,22 @@ public class DependencyGraphCommand {
       @ShellOption(defaultValue = "diagram") String name,
       boolean show,
       @ShellOption(defaultValue = "100") int maxSize,
-      boolean transitive)
+      boolean transitive,
+      boolean reduce)
       throws InterruptedException {
-    var vs = libiELService.filter(expr);
+    var workingGraph = dependencyGraphService.getWorkingGraph();
+    var vs = libiELService.filter(workingGraph, workingGraph, expr);
     Graph<Artifact, Dependency> subgraph = new AsSubgraph<>(
-        dependencyGraphService.getWorkingGraph().getGraph(), new HashSet<>(vs.getArtifacts()));
+        workingGraph.getGraph(), new HashSet<>(vs.getArtifacts()));
     System.out.printf("Created diagram with %d artifacts\n", subgraph.vertexSet().size());
-    var colorMap = colorService.getColorForVertices(new DependencyGraph(subgraph));
+    var colorMap = colorService.getColorForVertices(new DependencyGraph(subgraph), workingGraph);
     if (transitive) {
       subgraph = DependencyGraphOps.findTransitiveDependencies(
-          dependencyGraphService.getWorkingGraph(), new DependencyGraph(subgraph)).getGraph();
+          workingGraph, new DependencyGraph(subgraph)).getGraph();
+    }
+    if (reduce) {
+      subgraph = DependencyGraphOps.transitiveReduction(new DependencyGraph(subgraph)).getGraph();
+      System.out.printf("Reduced diagram to %d dependencies\n", subgraph.edgeSet().size());
     }
     dependencyGraphService.dotExport(subgraph, new File("diagrams/" + name), colorMap);
     if (show) {
@@ -151,11 +225,66 @@ public class DependencyGraphCommand {
     }
   }
 
+  @ShellMethod("Compare two graphs")
+  public void diff(
+      String oldGraph,
+      String newGraph,
+      @ShellOption(defaultValue = ".") String expr,
+      @ShellOption(defaultValue = ShellOption.NULL) String diagram,
+      boolean show,
+      @ShellOption(defaultValue = "100") int maxSize)
+      throws InterruptedException {
+    var diff = GraphDiff.of(
+        restrict(dependencyGraphService.getGraph(oldGraph), expr),
+        restrict(dependencyGraphService.getGraph(newGraph), expr));
+    if (diff.isEmpty()) {
+      System.out.println("No changes found.");
+      return;
+    }
+    System.out.printf("Artifacts: %d added, %d removed\n",
+        diff.getAddedArtifacts().size(), diff.getRemovedArtifacts().size());
+    diff.getAddedArtifacts().forEach(a -> System.out.println("+ " + a.getId()));
+    diff.getRemovedArtifacts().forEach(a -> System.out.println("- " + a.getId()));
+    System.out.printf("Dependencies: %d added, %d removed\n",
+        diff.getAddedDependencies().size(), diff.getRemovedDependencies().size());
+    diff.getAddedDependencies().forEach(c ->
+        System.out.println("+ " + c.getSource().getId() + " -> " + c.getTarget().getId()));
+    diff.getRemovedDependencies().forEach(c ->
+        System.out.println("- " + c.getSource().getId() + " -> " + c.getTarget().getId()));
+    if (!diff.getNewCycles().isEmpty()) {
+      System.out.println("\n !!! WARNING !!! added dependencies create cycles:");
+      diff.getNewCycles().forEach(cycle -> System.out.println(cycle.stream()
+          .map(Artifact::getId)
+          .collect(Collectors.joining(", ", "{", "}"))));
+    }
+    if (diagram != null) {
+      var file = new File("diagrams/" + diagram);
+      var diffGraph = diff.toGraph();
+      dependencyGraphService.dotExportDiff(diff, diffGraph, file);
+      if (show) {
+        if (diffGraph.getGraph().vertexSet().size() <= maxSize) {
+          if (graphVizService.dotGenPng(file)) {
+            imageViewerService.openInViewer(new File("diagrams/" + diagram + ".png"));
+          }
+        } else {
+          System.out.println("Diagram too big to show. Generated only dot file.");
+        }
+      }
+    }
+  }
+
+  private DependencyGraph restrict(DependencyGraph graph, String expr) {
+    if (".".equals(expr)) {
+      return graph;
+    }
+    return graph.subgraph(new HashSet<>(libiELService.filter(graph, graph, expr).getArtifacts()));
+  }
+
   @ShellMethod("List artifacts")
   public void list(
       String expr) {
     var vs = libiELService.filter(expr);
-    System.out.printf("Found %d artifacts:\n", vs.getArtifacts().size());
+    System.out.printf("Found %d artifacts:\n", vs.size());
     vs.getArtifacts().stream()
         .map(Artifact::getId)
         .sorted()
@@ -166,35 +295,30 @@ public class DependencyGraphCommand {
   public void count(
       String expr) {
     var vs = libiELService.filter(expr);
-    System.out.printf("Found %d artifacts\n", vs.getArtifacts().size());
+    System.out.printf("Found %d artifacts\n", vs.size());
   }
 
   @ShellMethod("Topological sort")
   public void tsort(
       String expr) {
-    var vs = libiELService.filter(expr);
-    var subgraph = new AsSubgraph<>(
-        dependencyGraphService.getWorkingGraph().getGraph(), new HashSet<>(vs.getArtifacts()));
-    var cArtifacts = new TreeSet<>(Comparator.comparing(Artifact::getId));
-    subgraph.vertexSet().stream().filter(a -> subgraph.outDegreeOf(a) == 0)
-        .forEach(cArtifacts::add);
-    while (!cArtifacts.isEmpty()) {
-      var cArtifact = cArtifacts.first();
-      System.out.println(cArtifact.getId());
-      var nb = subgraph.incomingEdgesOf(cArtifact).stream().map(subgraph::getEdgeSource).collect(
-          Collectors.toSet());
-      subgraph.removeVertex(cArtifact);
-      cArtifacts.remove(cArtifact);
-      nb.stream().filter(a -> subgraph.outDegreeOf(a) == 0).forEach(cArtifacts::add);
-    }
-    var remaining = subgraph.vertexSet();
-    if (!remaining.isEmpty()) {
+    var workingGraph = dependencyGraphService.getWorkingGraph();
+    var vs = libiELService.filter(workingGraph, workingGraph, expr);
+    var subgraph = workingGraph
+        .subgraph(new HashSet<>(vs.getArtifacts()));
+    var cycles = new AtomicBoolean();
+    DependencyGraphOps.topologicalOrder(subgraph).forEach(component -> {
+      if (component.size() == 1) {
+        System.out.println(component.get(0).getId());
+      } else {
+        cycles.set(true);
+        System.out.println(component.stream()
+            .map(Artifact::getId)
+            .collect(Collectors.joining(", ", "{", "}")));
+      }
+    });
+    if (cycles.get()) {
       System.out.println(
-          "\n !!! WARNING !!! could not sort all artifacts due to cycles. Remaining artifacts :\n");
-      remaining.stream()
-          .map(Artifact::getId)
-          .sorted()
-          .forEach(System.out::println);
+          "\n !!! WARNING !!! artifacts in braces depend on each other due to cycles.");
     }
   }
 }
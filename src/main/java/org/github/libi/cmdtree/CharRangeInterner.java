@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.cmdtree;
+
+/**
+ * Interns strings given as char ranges of a buffer. New string is created only the first time the
+ * range content is seen.
+ */
+public class CharRangeInterner {
+
+  private String[] table = new String[1024];
+
+  private int size = 0;
+
+  public String intern(char[] buffer, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+    int mask = table.length - 1;
+    int pos = mix(hash) & mask;
+    String s;
+    while ((s = table[pos]) != null) {
+      if (s.hashCode() == hash && matches(s, buffer, start, end)) {
+        return s;
+      }
+      pos = (pos + 1) & mask;
+    }
+    s = new String(buffer, start, end - start);
+    table[pos] = s;
+    if (++size * 2 > table.length) {
+      rehash();
+    }
+    return s;
+  }
+
+  private static boolean matches(String s, char[] buffer, int start, int end) {
+    if (s.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i - start) != buffer[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    var oldTable = table;
+    table = new String[oldTable.length * 2];
+    int mask = table.length - 1;
+    for (var s : oldTable) {
+      if (s != null) {
+        int pos = mix(s.hashCode()) & mask;
+        while (table[pos] != null) {
+          pos = (pos + 1) & mask;
+        }
+        table[pos] = s;
+      }
+    }
+  }
+
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
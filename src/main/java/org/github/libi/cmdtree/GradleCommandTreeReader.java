@@ -31,7 +31,8 @@ public class GradleCommandTreeReader {
   }
 
   private void readLine(String line) {
-    newLineListener.onNewLine(getLineTreeLevel(line), getLineText(line));
+    var level = getLineTreeLevel(line);
+    newLineListener.onNewLine(level, getLineText(line, level));
   }
 
   private int getLineTreeLevel(String line) {
@@ -42,8 +43,7 @@ public class GradleCommandTreeReader {
     return (pos - 1) / 5 + 1;
   }
 
-  private String getLineText(String line) {
-    var level = getLineTreeLevel(line);
+  private String getLineText(String line, int level) {
     if (level == 0) {
       return line;
     }
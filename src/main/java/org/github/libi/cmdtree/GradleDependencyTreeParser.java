@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.cmdtree;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass parser of gradle dependencies task output. Lines are parsed in place in a char
+ * buffer, without regular expressions and substrings. Configuration names, artifact ids and project
+ * paths are interned, so repeated dependencies do not allocate new strings.
+ */
+public class GradleDependencyTreeParser {
+
+  private static final int SEGMENT_LENGTH = 5;
+
+  private static final String PROJECT_PREFIX = "project ";
+
+  private final Listener listener;
+
+  private final CharRangeInterner interner = new CharRangeInterner();
+
+  private char[] buffer = new char[64 * 1024];
+
+  public GradleDependencyTreeParser(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Reads the whole output into a reusable buffer and parses every line where it was read.
+   */
+  public void parse(Reader reader) throws IOException {
+    int start = 0;
+    int end = 0;
+    int read;
+    while (true) {
+      if (end == buffer.length) {
+        if (start > 0) {
+          System.arraycopy(buffer, start, buffer, 0, end - start);
+          end -= start;
+          start = 0;
+        } else {
+          var newBuffer = new char[buffer.length * 2];
+          System.arraycopy(buffer, 0, newBuffer, 0, end);
+          buffer = newBuffer;
+        }
+      }
+      read = reader.read(buffer, end, buffer.length - end);
+      if (read < 0) {
+        break;
+      }
+      int scanFrom = end;
+      end += read;
+      for (int i = scanFrom; i < end; i++) {
+        if (buffer[i] == '\n') {
+          parseLine(buffer, start, i);
+          start = i + 1;
+        }
+      }
+      if (start == end) {
+        start = 0;
+        end = 0;
+      }
+    }
+    if (start < end) {
+      parseLine(buffer, start, end);
+    }
+  }
+
+  private void parseLine(char[] b, int start, int end) {
+    if (end > start && b[end - 1] == '\r') {
+      end--;
+    }
+    int pos = start;
+    int level = 0;
+    while (pos + SEGMENT_LENGTH <= end && (b[pos] == '|' || b[pos] == ' ')
+        && b[pos + 1] == ' ' && b[pos + 2] == ' ' && b[pos + 3] == ' ' && b[pos + 4] == ' ') {
+      pos += SEGMENT_LENGTH;
+      level++;
+    }
+    if (pos + SEGMENT_LENGTH <= end && (b[pos] == '+' || b[pos] == '\\')
+        && b[pos + 1] == '-' && b[pos + 2] == '-' && b[pos + 3] == '-' && b[pos + 4] == ' ') {
+      parseDependency(b, pos + SEGMENT_LENGTH, end, level + 1);
+    } else {
+      parseHeader(b, start, end);
+    }
+  }
+
+  private void parseHeader(char[] b, int start, int end) {
+    for (int i = start; i + 2 < end; i++) {
+      if (b[i] == ' ') {
+        if (b[i + 1] == '-' && b[i + 2] == ' ' && i > start) {
+          listener.onConfiguration(interner.intern(b, start, i));
+          return;
+        }
+        break;
+      }
+    }
+    listener.onConfiguration(null);
+  }
+
+  private void parseDependency(char[] b, int start, int end, int level) {
+    var marker = getMarker(b, start, end);
+    if (startsWith(b, start, end, PROJECT_PREFIX)) {
+      int pathStart = start + PROJECT_PREFIX.length();
+      int pathEnd = indexOf(b, pathStart, end, ' ');
+      listener.onProject(level, interner.intern(b, pathStart, pathEnd), marker);
+      return;
+    }
+    int groupEnd = indexOf(b, start, end, ':');
+    if (groupEnd == end || groupEnd == start) {
+      return;
+    }
+    int nameEnd = groupEnd + 1;
+    while (nameEnd < end && b[nameEnd] != ':' && b[nameEnd] != ' ') {
+      nameEnd++;
+    }
+    if (nameEnd == groupEnd + 1) {
+      return;
+    }
+    listener.onDependency(level, interner.intern(b, start, nameEnd), marker);
+  }
+
+  private static Marker getMarker(char[] b, int start, int end) {
+    if (end - start < 4 || b[end - 4] != ' ' || b[end - 3] != '(' || b[end - 1] != ')') {
+      return Marker.NONE;
+    }
+    switch (b[end - 2]) {
+      case '*':
+        return Marker.OMITTED;
+      case 'c':
+        return Marker.CONSTRAINT;
+      case 'n':
+        return Marker.NOT_RESOLVED;
+      default:
+        return Marker.NONE;
+    }
+  }
+
+  private static boolean startsWith(char[] b, int start, int end, String prefix) {
+    if (end - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (b[start + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(char[] b, int start, int end, char c) {
+    for (int i = start; i < end; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  public enum Marker {
+    NONE,
+    /**
+     * (*) - dependencies of the artifact were already listed.
+     */
+    OMITTED,
+    /**
+     * (c) - dependency constraint, not a dependency.
+     */
+    CONSTRAINT,
+    /**
+     * (n) - dependency not resolved.
+     */
+    NOT_RESOLVED
+  }
+
+  public interface Listener {
+
+    /**
+     * Called for every line which is not a part of dependency tree. Name is null if the line is
+     * not a configuration header.
+     */
+    void onConfiguration(String name);
+
+    void onDependency(int treeLevel, String id, Marker marker);
+
+    void onProject(int treeLevel, String path, Marker marker);
+  }
+}
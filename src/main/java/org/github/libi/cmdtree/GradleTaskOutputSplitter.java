@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.cmdtree;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Splits output of gradle run with many tasks (and with plain console) into output of every single
+ * task, using "> Task :path" header lines. Output of every task is kept as a single text.
+ */
+public class GradleTaskOutputSplitter {
+
+  private static final String LINE_START_FOR_TASK = "> Task ";
+
+  private static final String LINE_START_FOR_BUILD_RESULT = "BUILD ";
+
+  private static final String LINE_END_FOR_FAILED_TASK = " FAILED";
+
+  private final Map<String, StringBuilder> task2Output = new HashMap<>();
+
+  private final Set<String> failedTasks = new HashSet<>();
+
+  private StringBuilder currentOutput = null;
+
+  public void readLines(Stream<String> lines) {
+    lines.forEach(this::readLine);
+  }
+
+  public Stream<String> getTaskOutput(String taskPath) {
+    return getOutput(taskPath).lines();
+  }
+
+  public Reader getTaskReader(String taskPath) {
+    return new StringReader(getOutput(taskPath));
+  }
+
+  /**
+   * Returns true if header line of the task has been read.
+   */
+  public boolean isRun(String taskPath) {
+    return task2Output.containsKey(taskPath);
+  }
+
+  /**
+   * Returns true if the task has been marked as failed in its header line.
+   */
+  public boolean isFailed(String taskPath) {
+    return failedTasks.contains(taskPath);
+  }
+
+  private void readLine(String line) {
+    if (line.startsWith(LINE_START_FOR_TASK)) {
+      var taskPath = line.substring(LINE_START_FOR_TASK.length()).split(" ")[0];
+      currentOutput = task2Output.computeIfAbsent(taskPath, k -> new StringBuilder());
+      if (line.endsWith(LINE_END_FOR_FAILED_TASK)) {
+        failedTasks.add(taskPath);
+      }
+    } else if (line.startsWith(LINE_START_FOR_BUILD_RESULT)) {
+      currentOutput = null;
+    } else if (currentOutput != null) {
+      currentOutput.append(line).append('\n');
+    }
+  }
+
+  private String getOutput(String taskPath) {
+    var output = task2Output.get(taskPath);
+    return output == null ? "" : output.toString();
+  }
+}
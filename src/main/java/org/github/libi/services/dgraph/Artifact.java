@@ -7,15 +7,13 @@
 
 package org.github.libi.services.dgraph;
 
-import java.util.HashSet;
-import java.util.Set;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
+import lombok.EqualsAndHashCode.CacheStrategy;
+import lombok.ToString;
 
 @Data
-@EqualsAndHashCode
-@RequiredArgsConstructor
+@EqualsAndHashCode(cacheStrategy = CacheStrategy.LAZY)
 public class Artifact {
 
     private final String group;
@@ -23,21 +21,25 @@ public class Artifact {
     private final String name;
 
     @EqualsAndHashCode.Exclude
-    private final Set<String> compileDependencies = new HashSet<>();
-
-    @EqualsAndHashCode.Exclude
-    private final Set<String> runtimeDependencies = new HashSet<>();
+    @ToString.Exclude
+    private final String id;
 
     @EqualsAndHashCode.Exclude
     private boolean isLibrary;
 
+    public Artifact(String group, String name) {
+        this.group = group;
+        this.name = name;
+        this.id = group + ":" + name;
+    }
+
     public Artifact(String id) {
-        var tokens = id.split(":");
-        this.group = tokens[0];
-        this.name = tokens[1];
+        this(id.substring(0, id.indexOf(':')), idName(id));
     }
 
-    public String getId() {
-        return group + ":" + name;
+    private static String idName(String id) {
+        var start = id.indexOf(':') + 1;
+        var end = id.indexOf(':', start);
+        return end < 0 ? id.substring(start) : id.substring(start, end);
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Interns artifacts of a graph, so there is a single instance for every artifact id, and assigns
+ * them dense ordinals. Ordinal of an artifact does not change, even if the artifact is removed from
+ * the graph. Subgraphs share registry of their graph.
+ */
+public class ArtifactRegistry {
+
+  private final Map<String, Integer> id2ordinal = new HashMap<>();
+
+  private final List<Artifact> artifacts = new ArrayList<>();
+
+  /**
+   * Returns registered instance equal to the artifact, registering the artifact if there is none.
+   */
+  public synchronized Artifact intern(Artifact artifact) {
+    var ordinal = id2ordinal.get(artifact.getId());
+    if (ordinal != null) {
+      return artifacts.get(ordinal);
+    }
+    id2ordinal.put(artifact.getId(), artifacts.size());
+    artifacts.add(artifact);
+    return artifact;
+  }
+
+  public synchronized Optional<Artifact> get(String id) {
+    return Optional.ofNullable(id2ordinal.get(id)).map(artifacts::get);
+  }
+
+  /**
+   * Returns ordinal of the artifact or -1 if the artifact is not registered.
+   */
+  public synchronized int ordinal(Artifact artifact) {
+    var ordinal = id2ordinal.get(artifact.getId());
+    return ordinal != null ? ordinal : -1;
+  }
+
+  public synchronized Artifact artifact(int ordinal) {
+    return artifacts.get(ordinal);
+  }
+
+  public synchronized int size() {
+    return artifacts.size();
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+/**
+ * Binary graph file. The file is read in a single buffered pass and closed before the graph is
+ * returned, and written to temporary file moved in place, so readers never see partially written
+ * file. The file is not memory-mapped: queries need the JGraphT graph anyway, and a mapping stays
+ * open until it is garbage collected, which makes replacing the file fail on Windows. Adjacency is
+ * read straight into the arrays of the graph snapshot, so it is not rebuilt on first query.
+ *
+ * <pre>
+ * magic      "LIBI"
+ * version    int
+ * strings    varint count, then varint length and UTF-8 bytes of every string
+ * artifacts  varint count, then varint group string, varint name string and flags byte
+ * edges      varint count, then for every artifact varint out degree and for every dependency
+ *            varint target delta (targets sorted ascending) and flags byte
+ * </pre>
+ *
+ * <p>Artifact flags: bit 0 - library. Dependency flags: bits 0-3 - classpaths, bits 4-5 - type
+ * (0 for no type, ordinal + 1 otherwise).
+ */
+public class BinaryGraphFile {
+
+  private static final byte[] MAGIC = "LIBI".getBytes(StandardCharsets.US_ASCII);
+
+  private static final int VERSION = 1;
+
+  private static final int LIBRARY = 1;
+
+  private static final int CLASSPATHS_MASK = 0x0f;
+
+  private static final int TYPE_SHIFT = 4;
+
+  public static void write(DependencyGraph dependencyGraph, File file) throws IOException {
+    var graph = dependencyGraph.getGraph();
+    var artifacts = new ArrayList<>(graph.vertexSet());
+    var artifact2index = new HashMap<Artifact, Integer>();
+    var strings = new ArrayList<String>();
+    var string2index = new HashMap<String, Integer>();
+    for (var artifact : artifacts) {
+      artifact2index.put(artifact, artifact2index.size());
+      stringIndex(artifact.getGroup(), strings, string2index);
+      stringIndex(artifact.getName(), strings, string2index);
+    }
+    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+    var tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    try (var out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      writeVarint(out, strings.size());
+      for (var string : strings) {
+        var bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+      }
+      writeVarint(out, artifacts.size());
+      for (var artifact : artifacts) {
+        writeVarint(out, string2index.get(artifact.getGroup()));
+        writeVarint(out, string2index.get(artifact.getName()));
+        out.writeByte(artifact.isLibrary() ? LIBRARY : 0);
+      }
+      writeVarint(out, graph.edgeSet().size());
+      for (var artifact : artifacts) {
+        var dependencies = new ArrayList<>(graph.outgoingEdgesOf(artifact));
+        dependencies.sort((d1, d2) -> Integer.compare(
+            artifact2index.get(graph.getEdgeTarget(d1)),
+            artifact2index.get(graph.getEdgeTarget(d2))));
+        writeVarint(out, dependencies.size());
+        var previous = 0;
+        for (var dependency : dependencies) {
+          var target = artifact2index.get(graph.getEdgeTarget(dependency));
+          writeVarint(out, target - previous);
+          previous = target;
+          var type = dependency.getType() == null ? 0 : dependency.getType().ordinal() + 1;
+          out.writeByte((dependency.getClasspaths() & CLASSPATHS_MASK) | type << TYPE_SHIFT);
+        }
+      }
+    } catch (IOException e) {
+      Files.deleteIfExists(tmpFile.toPath());
+      throw e;
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public static DependencyGraph read(File file) throws IOException {
+    try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      var magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!new String(magic, StandardCharsets.US_ASCII).equals("LIBI")) {
+        throw new IOException("Not a libi graph file: " + file);
+      }
+      var version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported libi graph file version " + version + ": " + file);
+      }
+      var strings = new String[readVarint(in)];
+      for (int i = 0; i < strings.length; i++) {
+        var bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+      var graph = new DefaultDirectedGraph<Artifact, Dependency>(Dependency.class);
+      var registry = new ArtifactRegistry();
+      var artifacts = new Artifact[readVarint(in)];
+      for (int i = 0; i < artifacts.length; i++) {
+        artifacts[i] = new Artifact(strings[readVarint(in)], strings[readVarint(in)]);
+        artifacts[i].setLibrary((in.readByte() & LIBRARY) != 0);
+        if (registry.intern(artifacts[i]) != artifacts[i]) {
+          throw new IOException("Duplicated artifact " + artifacts[i].getId() + ": " + file);
+        }
+        graph.addVertex(artifacts[i]);
+      }
+      var types = Dependency.Type.values();
+      var outOffsets = new int[artifacts.length + 1];
+      var outTargets = new int[readVarint(in)];
+      var outClasspaths = new byte[outTargets.length];
+      var e = 0;
+      for (int v = 0; v < artifacts.length; v++) {
+        var degree = readVarint(in);
+        if (degree > outTargets.length - e) {
+          throw new IOException("Invalid dependency count: " + file);
+        }
+        var target = 0;
+        for (int i = 0; i < degree; i++, e++) {
+          target += readVarint(in);
+          var flags = in.readByte();
+          var dependency = new Dependency();
+          dependency.setClasspaths(flags & CLASSPATHS_MASK);
+          var type = (flags & 0xff) >>> TYPE_SHIFT;
+          if (type > 0) {
+            dependency.setType(types[type - 1]);
+          }
+          graph.addEdge(artifacts[v], artifacts[target], dependency);
+          outTargets[e] = target;
+          outClasspaths[e] = (byte) dependency.getClasspaths();
+        }
+        outOffsets[v + 1] = e;
+      }
+      if (e != outTargets.length) {
+        throw new IOException("Invalid dependency count: " + file);
+      }
+      return new DependencyGraph(graph, registry,
+          GraphSnapshot.of(registry, outOffsets, outTargets, outClasspaths));
+    }
+  }
+
+  private static int stringIndex(String string, List<String> strings,
+      Map<String, Integer> string2index) {
+    return string2index.computeIfAbsent(string, s -> {
+      strings.add(s);
+      return strings.size() - 1;
+    });
+  }
+
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(DataInputStream in) throws IOException {
+    var value = 0;
+    var shift = 0;
+    byte b;
+    do {
+      b = in.readByte();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
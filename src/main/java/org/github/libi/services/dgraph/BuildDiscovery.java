@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Finds gradle builds under scan roots. A build is a directory with gradlew script, or also with
+ * settings file when gradlew is not required, builds nested in other builds are not reported.
+ * Directories from built-in skip list and directories matching patterns from .gitignore and
+ * .libiignore files of the scan root are not visited. Roots are walked in parallel.
+ */
+public class BuildDiscovery {
+
+  private static final Set<String> GRADLEW_FILE_NAMES = Set.of(
+      "gradlew"
+  );
+
+  private static final Set<String> BUILD_FILE_NAMES = Set.of(
+      "gradlew",
+      "settings.gradle",
+      "settings.gradle.kts"
+  );
+
+  private static final Set<String> SKIPPED_DIR_NAMES = Set.of(
+      "build",
+      "out",
+      "target",
+      "node_modules",
+      ".git",
+      ".gradle",
+      ".idea"
+  );
+
+  private static final List<String> IGNORE_FILE_NAMES = List.of(".gitignore", ".libiignore");
+
+  private final int depth;
+
+  private final Set<String> buildFileNames;
+
+  /**
+   * @param gradlewRequired only directories with gradlew script are builds, as they are scanned by
+   *                        running it
+   */
+  public BuildDiscovery(int depth, boolean gradlewRequired) {
+    this.depth = depth;
+    this.buildFileNames = gradlewRequired ? GRADLEW_FILE_NAMES : BUILD_FILE_NAMES;
+  }
+
+  /**
+   * Returns build directories of all roots. Builds of every root are sorted by path, roots keep
+   * given order.
+   */
+  public List<File> find(Collection<String> roots) {
+    return roots.parallelStream()
+        .map(root -> find(Path.of(root)))
+        .flatMap(List::stream)
+        .collect(Collectors.toList());
+  }
+
+  public List<File> find(Path root) {
+    if (!Files.isDirectory(root)) {
+      return List.of();
+    }
+    var ignoreRules = readIgnoreRules(root);
+    var builds = new TreeSet<Path>();
+    try {
+      Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), depth,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              if (!dir.equals(root) && (SKIPPED_DIR_NAMES.contains(dir.getFileName().toString())
+                  || ignoreRules.isIgnored(root.relativize(dir)))) {
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (buildFileNames.contains(file.getFileName().toString())) {
+                builds.add(file.getParent());
+                // subdirectories not visited yet belong to the build
+                return FileVisitResult.SKIP_SIBLINGS;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return removeNested(builds);
+  }
+
+  /**
+   * Removes builds nested in other builds. In sorted set a build directory precedes all its
+   * subdirectories.
+   */
+  private static List<File> removeNested(TreeSet<Path> builds) {
+    var result = new ArrayList<File>();
+    Path outer = null;
+    for (var build : builds) {
+      if (outer == null || !build.startsWith(outer)) {
+        outer = build;
+        result.add(build.toFile());
+      }
+    }
+    return result;
+  }
+
+  private static IgnoreRules readIgnoreRules(Path root) {
+    var rules = new IgnoreRules();
+    for (var name : IGNORE_FILE_NAMES) {
+      try {
+        Files.readAllLines(root.resolve(name)).forEach(rules::add);
+      } catch (NoSuchFileException e) {
+        // no ignore file
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * Subset of gitignore patterns. Pattern with slash at the beginning or in the middle is matched
+   * against path relative to the root, other patterns are matched against directory name. As in
+   * gitignore, leading '**' directory matches in all directories (also in the root), '**' directory
+   * in the middle matches zero or more directories and trailing '**' matches directory content.
+   * Negated patterns are not supported and are skipped.
+   */
+  private static class IgnoreRules {
+
+    private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+    private final List<PathMatcher> nameMatchers = new ArrayList<>();
+
+    void add(String line) {
+      var pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#") || pattern.startsWith("!")) {
+        return;
+      }
+      if (pattern.endsWith("/")) {
+        pattern = pattern.substring(0, pattern.length() - 1);
+      }
+      var anyDir = false;
+      while (pattern.startsWith("**/")) {
+        pattern = pattern.substring(3);
+        anyDir = true;
+      }
+      if (pattern.endsWith("/**")) {
+        // content of ignored directory is not visited anyway
+        pattern = pattern.substring(0, pattern.length() - 3);
+      }
+      if (pattern.contains("/")) {
+        if (pattern.startsWith("/")) {
+          pattern = pattern.substring(1);
+        }
+        addPathMatchers(pattern);
+        if (anyDir) {
+          addPathMatchers("**/" + pattern);
+        }
+      } else if (!pattern.isEmpty() && !"**".equals(pattern)) {
+        nameMatchers.add(getMatcher(pattern));
+      }
+    }
+
+    private void addPathMatchers(String pattern) {
+      pathMatchers.add(getMatcher(pattern));
+      if (pattern.contains("/**/")) {
+        pathMatchers.add(getMatcher(pattern.replace("/**/", "/")));
+      }
+    }
+
+    private static PathMatcher getMatcher(String pattern) {
+      return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+
+    boolean isIgnored(Path relativePath) {
+      var name = relativePath.getFileName();
+      return nameMatchers.stream().anyMatch(matcher -> matcher.matches(name))
+          || pathMatchers.stream().anyMatch(matcher -> matcher.matches(relativePath));
+    }
+  }
+}
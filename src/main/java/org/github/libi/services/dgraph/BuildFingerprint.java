@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fingerprint of gradle build inputs (build scripts, settings, properties, version catalogs,
+ * lockfiles and wrapper properties). If fingerprint is not changed, scanning the build gives the
+ * same result.
+ */
+public class BuildFingerprint {
+
+  private static final Set<String> INPUT_FILE_NAMES = Set.of(
+      "build.gradle",
+      "build.gradle.kts",
+      "settings.gradle",
+      "settings.gradle.kts",
+      "gradle.properties",
+      "gradle-wrapper.properties"
+  );
+
+  private static final List<String> INPUT_FILE_SUFFIXES = List.of(
+      ".versions.toml",
+      ".lockfile"
+  );
+
+  private static final Set<String> SKIPPED_DIR_NAMES = Set.of(
+      "build",
+      "src",
+      "out",
+      "node_modules",
+      ".git",
+      ".gradle",
+      ".idea"
+  );
+
+  public static String of(File dir) {
+    var root = dir.toPath();
+    var inputFiles = new ArrayList<Path>();
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+          if (!path.equals(root) && SKIPPED_DIR_NAMES.contains(path.getFileName().toString())) {
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+          if (isInputFile(path.getFileName().toString())) {
+            inputFiles.add(root.relativize(path));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      inputFiles.sort(Path::compareTo);
+      var digest = MessageDigest.getInstance("SHA-256");
+      for (var inputFile : inputFiles) {
+        digest.update(inputFile.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Files.readAllBytes(root.resolve(inputFile)));
+        digest.update((byte) 0);
+      }
+      return toHex(digest.digest());
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static boolean isInputFile(String fileName) {
+    return INPUT_FILE_NAMES.contains(fileName)
+        || INPUT_FILE_SUFFIXES.stream().anyMatch(fileName::endsWith);
+  }
+
+  static String toHex(byte[] bytes) {
+    var sb = new StringBuilder(bytes.length * 2);
+    for (var b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
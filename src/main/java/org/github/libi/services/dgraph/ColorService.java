@@ -30,11 +30,12 @@ public class ColorService {
     colors.put(color, expr);
   }
 
-  public Map<String, VerticeSet> getColorForVertices(DependencyGraph graph) {
+  public Map<String, VerticeSet> getColorForVertices(DependencyGraph graph,
+      DependencyGraph mainGraph) {
     return colors.entrySet().stream()
         .collect(Collectors.toMap(
             Entry::getKey,
-            e -> libiELService.filter(graph, e.getValue()),
+            e -> libiELService.filter(graph, mainGraph, e.getValue()),
             (o1, o2) -> o1,
             LinkedHashMap::new));
   }
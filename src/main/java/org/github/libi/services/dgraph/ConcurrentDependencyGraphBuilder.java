@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+/**
+ * Collects artifacts and dependencies of graphs added from many threads and builds dependency
+ * graph of them. Artifacts are interned in concurrent map without global lock, and dependencies
+ * and library flags of every added graph are copied to its own buffer, which is published when the
+ * graph has been copied. Artifacts and dependencies can be also added one by one through a
+ * {@link Producer}, which has its own buffer too. Buffers are merged and released by
+ * {@link #build()}, which must be called after all producers have finished, and leaves the builder
+ * empty.
+ *
+ * <p>Artifacts given to the builder are never changed. The built graph has its own artifact
+ * instances, added in id order, and dependencies added in source and target id order, so the
+ * result does not depend on the order in which threads delivered them.
+ */
+public class ConcurrentDependencyGraphBuilder {
+
+  private final Map<String, Artifact> artifacts = new ConcurrentHashMap<>();
+
+  private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Adds all artifacts, dependencies and library flags of the graph.
+   */
+  public void addGraph(DependencyGraph dependencyGraph) {
+    var graph = dependencyGraph.getGraph();
+    var buffer = new Buffer(graph.edgeSet().size());
+    for (var artifact : graph.vertexSet()) {
+      var interned = addArtifact(artifact);
+      if (artifact.isLibrary()) {
+        buffer.libraries.add(interned);
+      }
+    }
+    for (var dependency : graph.edgeSet()) {
+      var copy = new Dependency();
+      copy.setType(dependency.getType());
+      copy.setTransitive(dependency.isTransitive());
+      copy.setDist(dependency.getDist());
+      copy.setClasspaths(dependency.getClasspaths());
+      buffer.edges.add(new Edge(addArtifact(graph.getEdgeSource(dependency)),
+          addArtifact(graph.getEdgeTarget(dependency)), copy));
+    }
+    buffers.add(buffer);
+  }
+
+  /**
+   * Returns producer adding artifacts and dependencies one by one, eg. while they are read from
+   * graph file. Producer must be used by single thread.
+   */
+  public Producer producer() {
+    var buffer = new Buffer(0);
+    buffers.add(buffer);
+    return new Producer(buffer);
+  }
+
+  /**
+   * Merges buffers of all added graphs into new graph. Duplicated dependencies are added once,
+   * direct dependency is preferred to transitive one and the shortest one is preferred to longer
+   * ones. Classpaths of duplicated dependencies are merged.
+   */
+  public DependencyGraph build() {
+    var graph = new DefaultDirectedGraph<Artifact, Dependency>(Dependency.class);
+    artifacts.values().stream()
+        .sorted(Comparator.comparing(Artifact::getId))
+        .forEach(graph::addVertex);
+    artifacts.clear();
+    var edges = new ArrayList<Edge>();
+    Buffer buffer;
+    while ((buffer = buffers.poll()) != null) {
+      edges.addAll(buffer.edges);
+      buffer.libraries.forEach(artifact -> artifact.setLibrary(true));
+    }
+    edges.sort(Comparator.<Edge, String>comparing(edge -> edge.source.getId())
+        .thenComparing(edge -> edge.target.getId())
+        .thenComparing(edge -> edge.dependency.isTransitive())
+        .thenComparingInt(edge -> edge.dependency.getDist()));
+    for (var edge : edges) {
+      if (!graph.addEdge(edge.source, edge.target, edge.dependency)) {
+        var existing = graph.getEdge(edge.source, edge.target);
+        existing.setClasspaths(existing.getClasspaths() | edge.dependency.getClasspaths());
+      }
+    }
+    return new DependencyGraph(graph);
+  }
+
+  /**
+   * Returns artifact instance of the built graph for given artifact.
+   */
+  private Artifact addArtifact(Artifact artifact) {
+    var interned = artifacts.get(artifact.getId());
+    if (interned != null) {
+      return interned;
+    }
+    return artifacts.computeIfAbsent(artifact.getId(),
+        id -> new Artifact(artifact.getGroup(), artifact.getName()));
+  }
+
+  /**
+   * Adds artifacts and dependencies to its own buffer of the builder.
+   */
+  public class Producer {
+
+    private final Buffer buffer;
+
+    private Producer(Buffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Returns artifact instance of the built graph for given artifact id.
+     */
+    public Artifact addArtifact(String id) {
+      var interned = artifacts.get(id);
+      return interned != null ? interned : artifacts.computeIfAbsent(id, Artifact::new);
+    }
+
+    /**
+     * Marks artifact returned by {@link #addArtifact(String)} as library.
+     */
+    public void addLibrary(Artifact artifact) {
+      buffer.libraries.add(artifact);
+    }
+
+    /**
+     * Adds dependency between artifacts returned by {@link #addArtifact(String)}. The dependency is
+     * added to the built graph, unless it is a duplicate.
+     */
+    public void addDependency(Artifact source, Artifact target, Dependency dependency) {
+      buffer.edges.add(new Edge(source, target, dependency));
+    }
+  }
+
+  private static class Buffer {
+
+    private final List<Edge> edges;
+
+    private final List<Artifact> libraries = new ArrayList<>();
+
+    private Buffer(int edgeCount) {
+      edges = new ArrayList<>(edgeCount);
+    }
+  }
+
+  private static class Edge {
+
+    private final Artifact source;
+
+    private final Artifact target;
+
+    private final Dependency dependency;
+
+    private Edge(Artifact source, Artifact target, Dependency dependency) {
+      this.source = source;
+      this.target = target;
+      this.dependency = dependency;
+    }
+  }
+}
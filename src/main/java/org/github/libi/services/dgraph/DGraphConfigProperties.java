@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "libi.dgraph")
+public class DGraphConfigProperties {
+  private boolean reachabilityIndex = false;
+
+  private DataSize reachabilityIndexMaxClosure = DataSize.ofMegabytes(64);
+
+  private int loadedGraphs = 4;
+
+  private GraphFormat graphFormat = GraphFormat.JSON;
+
+  private int historyCheckpointInterval = 10;
+}
@@ -8,18 +8,19 @@
 package org.github.libi.services.dgraph;
 
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Optional;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
-import org.github.libi.cmdtree.GradleCommandTreeReader;
+import org.github.libi.cmdtree.GradleDependencyTreeParser;
+import org.github.libi.cmdtree.GradleDependencyTreeParser.Marker;
 
 @Getter
 @Setter
 @RequiredArgsConstructor
-public class DGraphTreeLineListener implements GradleCommandTreeReader.NewLineListener {
+public class DGraphTreeLineListener implements GradleDependencyTreeParser.Listener {
 
   private static final Map<String, DependencyCategory> LINE_START_2_CATEGORY = Map.of(
       "compileClasspath", DependencyCategory.COMPILE_CLASSPATH,
@@ -30,33 +31,34 @@ public class DGraphTreeLineListener implements GradleCommandTreeReader.NewLineLi
 
   private final Deque<Artifact> artifactStack = new LinkedList<>();
 
-  private final Artifact projectArtifact;
-
   private DependencyCategory currentCategory = null;
 
   private Map<String, Artifact> projectName2ArtifactDict;
 
+  private final Map<String, Artifact> id2artifact = new HashMap<>();
+
+  @Override
+  public void onConfiguration(String name) {
+    currentCategory = name == null ? null : LINE_START_2_CATEGORY.get(name);
+    clearStack(1);
+  }
+
+  @Override
+  public void onDependency(int treeLevel, String id, Marker marker) {
+    if (currentCategory == null || marker == Marker.CONSTRAINT) {
+      return;
+    }
+    clearStack(treeLevel);
+    addArtifact(id2artifact.computeIfAbsent(id, Artifact::new));
+  }
+
   @Override
-  public void onNewLine(int treeLevel, String text) {
-    if (treeLevel == 0) {
-      currentCategory = Optional.ofNullable(text.split(" - "))
-          .filter(tokens -> tokens.length == 2)
-          .map(tokens -> tokens[0])
-          .map(LINE_START_2_CATEGORY::get)
-          .orElse(null);
-      clearStack(1);
-    } else if (currentCategory != null) {
-      clearStack(treeLevel);
-      if (text.startsWith("project ")) {
-        var artifact = projectName2ArtifactDict.get(text.substring(8).split(" ")[0]);
-        addArtifact(artifact);
-      } else {
-        Optional.ofNullable(text.split("[: ]"))
-            .filter(tokens -> tokens.length >= 2)
-            .map(tokens -> new Artifact(tokens[0], tokens[1]))
-            .ifPresent(this::addArtifact);
-      }
+  public void onProject(int treeLevel, String path, Marker marker) {
+    if (currentCategory == null) {
+      return;
     }
+    clearStack(treeLevel);
+    addArtifact(projectName2ArtifactDict.get(path));
   }
 
   public void addArtifact(Artifact artifact) {
@@ -64,14 +66,7 @@ public class DGraphTreeLineListener implements GradleCommandTreeReader.NewLineLi
       graph.addArtifact(artifact);
     } else {
       var dependency = graph.addDependency(artifactStack.peekLast(), artifact);
-      switch (currentCategory) {
-        case COMPILE_CLASSPATH:
-          projectArtifact.getCompileDependencies().add(artifact.getId());
-          break;
-        case RUNTIME_CLASSPATH:
-          projectArtifact.getRuntimeDependencies().add(artifact.getId());
-          break;
-      }
+      dependency.addClasspath(currentCategory);
     }
     artifactStack.offer(artifact);
   }
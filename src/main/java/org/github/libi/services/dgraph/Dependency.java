@@ -42,4 +42,16 @@ public class Dependency {
 
   private int dist = 0;
 
+  /**
+   * Bitmask of {@link DependencyCategory} masks of classpaths on which the dependency was found.
+   */
+  private int classpaths = 0;
+
+  public void addClasspath(DependencyCategory category) {
+    classpaths |= category.getMask();
+  }
+
+  public boolean isOnClasspath(DependencyCategory category) {
+    return (classpaths & category.getMask()) != 0;
+  }
 }
@@ -7,7 +7,19 @@
 
 package org.github.libi.services.dgraph;
 
+/**
+ * Classpath on which a dependency was found. Classpaths of a dependency are kept as bitmask of
+ * category masks.
+ */
 public enum DependencyCategory {
   COMPILE_CLASSPATH,
-  RUNTIME_CLASSPATH
+  RUNTIME_CLASSPATH;
+
+  public int getMask() {
+    return 1 << ordinal();
+  }
+
+  public static int getAllMask() {
+    return (1 << values().length) - 1;
+  }
 }
@@ -7,90 +7,99 @@
 
 package org.github.libi.services.dgraph;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import lombok.Setter;
-import org.jgrapht.Graph;
+import org.github.libi.services.dgraph.GraphTraversal.Direction;
 
 @Getter
-@Setter
 @RequiredArgsConstructor
 public class DependencyFlow {
-  private final Graph<Artifact, Dependency> graph;
+  private final GraphSnapshot snapshot;
+
+  /**
+   * Strongly connected components of the snapshot or null if they are not known.
+   */
+  private final SccIndex sccIndex;
 
   public DependencyFlow(DependencyGraph graph) {
-    this.graph = graph.getGraph();
+    this.snapshot = graph.getSnapshot();
+    this.sccIndex = graph.findSccIndex()
+        .filter(index -> index.getSnapshot() == snapshot)
+        .orElse(null);
+  }
+
+  /**
+   * Returns artifacts with all artifacts they depend on.
+   */
+  public Set<Artifact> flowOutgoing(Collection<Artifact> artifacts) {
+    return flow(artifacts, null, Direction.OUTGOING, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns artifacts with all artifacts depending on them.
+   */
+  public Set<Artifact> flowIncoming(Collection<Artifact> artifacts) {
+    return flow(artifacts, null, Direction.INCOMING, Integer.MAX_VALUE);
   }
 
   public Set<Artifact> flowOutgoing(Collection<Artifact> artifacts, Predicate<Artifact> stopCondition) {
-    Set<Artifact> visited = new HashSet<>();
-    Set<Artifact> toCheck = new HashSet<>();
-    toCheck.addAll(artifacts);
-    while (!toCheck.isEmpty()) {
-      var current = toCheck.iterator().next();
-      toCheck.remove(current);
-      visited.add(current);
-      graph.outgoingEdgesOf(current).stream()
-          .map(graph::getEdgeTarget)
-          .filter(Predicate.not(stopCondition))
-          .filter(Predicate.not(visited::contains))
-          .forEach(toCheck::add);
-    }
-    return visited;
+    return flow(artifacts, stopCondition, Direction.OUTGOING, Integer.MAX_VALUE);
   }
 
   public Set<Artifact> directOutgoing(Collection<Artifact> artifacts, Predicate<Artifact> stopCondition) {
-    Set<Artifact> visited = new HashSet<>();
-    Set<Artifact> toCheck = new HashSet<>();
-    toCheck.addAll(artifacts);
-    while (!toCheck.isEmpty()) {
-      var current = toCheck.iterator().next();
-      toCheck.remove(current);
-      visited.add(current);
-      graph.outgoingEdgesOf(current).stream()
-          .map(graph::getEdgeTarget)
-          .filter(Predicate.not(stopCondition))
-          .filter(Predicate.not(visited::contains))
-          .forEach(visited::add);
-    }
-    return visited;
+    return flow(artifacts, stopCondition, Direction.OUTGOING, 1);
   }
 
   public Set<Artifact> flowIncoming(Collection<Artifact> artifacts, Predicate<Artifact> stopCondition) {
-    Set<Artifact> visited = new HashSet<>();
-    Set<Artifact> toCheck = new HashSet<>();
-    toCheck.addAll(artifacts);
-    while (!toCheck.isEmpty()) {
-      var current = toCheck.iterator().next();
-      toCheck.remove(current);
-      visited.add(current);
-      graph.incomingEdgesOf(current).stream()
-          .map(graph::getEdgeSource)
-          .filter(Predicate.not(stopCondition))
-          .filter(Predicate.not(visited::contains))
-          .forEach(toCheck::add);
-    }
-    return visited;
+    return flow(artifacts, stopCondition, Direction.INCOMING, Integer.MAX_VALUE);
   }
 
   public Set<Artifact> directIncoming(Collection<Artifact> artifacts, Predicate<Artifact> stopCondition) {
-    Set<Artifact> visited = new HashSet<>();
-    Set<Artifact> toCheck = new HashSet<>();
-    toCheck.addAll(artifacts);
-    while (!toCheck.isEmpty()) {
-      var current = toCheck.iterator().next();
-      toCheck.remove(current);
-      visited.add(current);
-      graph.incomingEdgesOf(current).stream()
-          .map(graph::getEdgeSource)
-          .filter(Predicate.not(stopCondition))
-          .filter(Predicate.not(visited::contains))
-          .forEach(visited::add);
+    return flow(artifacts, stopCondition, Direction.INCOMING, 1);
+  }
+
+  /**
+   * Returns ordinals of given vertices and vertices reachable from them, without mapping to
+   * artifacts. Without stop condition whole strongly connected components are visited at once, if
+   * they are known.
+   */
+  public BitSet flow(BitSet vertices, IntPredicate stopCondition, Direction direction,
+      int maxDepth) {
+    var traversal = new GraphTraversal(snapshot);
+    if (stopCondition == null && sccIndex != null && maxDepth == Integer.MAX_VALUE) {
+      return traversal.reach(vertices, direction, sccIndex);
+    }
+    return traversal.reach(vertices, direction, maxDepth,
+        stopCondition != null ? stopCondition : v -> false);
+  }
+
+  /**
+   * Returns given artifacts with artifacts reachable from them within maxDepth steps. Artifacts
+   * meeting stop condition (if any) are not visited. Given artifacts not present in the graph are
+   * returned as they are.
+   */
+  private Set<Artifact> flow(Collection<Artifact> artifacts, Predicate<Artifact> stopCondition,
+      Direction direction, int maxDepth) {
+    Set<Artifact> result = new HashSet<>();
+    var sources = new BitSet(snapshot.size());
+    for (var artifact : artifacts) {
+      var v = snapshot.ordinal(artifact);
+      if (v >= 0) {
+        sources.set(v);
+      } else {
+        result.add(artifact);
+      }
     }
-    return visited;
+    IntPredicate ordinalStopCondition = stopCondition == null
+        ? null : v -> stopCondition.test(snapshot.artifact(v));
+    var visited = flow(sources, ordinalStopCondition, direction, maxDepth);
+    visited.stream().mapToObj(snapshot::artifact).forEach(result::add);
+    return result;
   }
 }
@@ -10,6 +10,7 @@ package org.github.libi.services.dgraph;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.Set;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.AsSubgraph;
@@ -20,31 +21,175 @@ public class DependencyGraph {
 
   private final Graph<Artifact, Dependency> graph;
 
+  private final ArtifactRegistry registry;
+
+  @Getter(AccessLevel.NONE)
+  private volatile GraphSnapshot snapshot;
+
+  @Getter(AccessLevel.NONE)
+  private volatile SccIndex sccIndex;
+
+  private volatile boolean frozen;
+
+  @Getter(AccessLevel.NONE)
+  private volatile ReachabilityIndex reachabilityIndex;
+
   public DependencyGraph(Graph<Artifact, Dependency> graph) {
     this.graph = graph;
+    this.registry = new ArtifactRegistry();
+    graph.vertexSet().forEach(registry::intern);
+  }
+
+  /**
+   * Creates graph with already built snapshot, which must describe the graph.
+   */
+  DependencyGraph(Graph<Artifact, Dependency> graph, ArtifactRegistry registry,
+      GraphSnapshot snapshot) {
+    this.graph = graph;
+    this.registry = registry;
+    this.snapshot = snapshot;
   }
 
   public DependencyGraph() {
     this.graph = new DefaultDirectedGraph<>(Dependency.class);
+    this.registry = new ArtifactRegistry();
+  }
+
+  /**
+   * Returns read-only snapshot of the graph for queries. Snapshot is built on first call and kept
+   * until the graph is changed with methods of this class. Code changing underlying graph directly
+   * must call {@link #invalidateSnapshot()}.
+   */
+  public GraphSnapshot getSnapshot() {
+    var result = snapshot;
+    if (result == null) {
+      synchronized (this) {
+        result = snapshot;
+        if (result == null) {
+          result = GraphSnapshot.of(graph, registry);
+          snapshot = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Makes the graph read-only for methods of this class. Published graphs are frozen, so queries
+   * using them never see changes.
+   */
+  public void freeze() {
+    frozen = true;
   }
 
-  public void addArtifact(Artifact artifact) {
-    graph.addVertex(artifact);
+  public void invalidateSnapshot() {
+    if (frozen) {
+      throw new IllegalStateException("Frozen dependency graph cannot be changed");
+    }
+    snapshot = null;
+    sccIndex = null;
+    reachabilityIndex = null;
+  }
+
+  /**
+   * Returns strongly connected components of current snapshot, finding them on first call after
+   * the graph has been changed.
+   */
+  public SccIndex getSccIndex() {
+    var result = sccIndex;
+    if (result == null) {
+      synchronized (this) {
+        result = sccIndex;
+        if (result == null) {
+          result = SccIndex.of(getSnapshot());
+          sccIndex = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns strongly connected components if they have been already found for current snapshot.
+   */
+  public Optional<SccIndex> findSccIndex() {
+    return Optional.ofNullable(sccIndex);
+  }
+
+  /**
+   * Builds reachability index for current snapshot. The index is dropped together with the
+   * snapshot.
+   */
+  public ReachabilityIndex buildReachabilityIndex(long maxClosureBytes) {
+    var index = ReachabilityIndex.of(getSccIndex(), maxClosureBytes);
+    reachabilityIndex = index;
+    return index;
+  }
+
+  /**
+   * Returns reachability index if it has been built for this graph and the graph has not been
+   * changed since. Subgraphs have no index.
+   */
+  public Optional<ReachabilityIndex> getReachabilityIndex() {
+    return Optional.ofNullable(reachabilityIndex);
+  }
+
+  /**
+   * Adds artifact to the graph and returns instance kept in the graph, which is the given artifact
+   * if the graph has no artifact with the same id.
+   */
+  public Artifact addArtifact(Artifact artifact) {
+    invalidateSnapshot();
+    var registered = registry.intern(artifact);
+    graph.addVertex(registered);
+    return registered;
   }
 
   public Dependency addDependency(Artifact source, Artifact target) {
-    graph.addVertex(source);
-    graph.addVertex(target);
-    graph.addEdge(source, target, new Dependency());
-    return graph.getEdge(source, target);
+    var registeredSource = addArtifact(source);
+    var registeredTarget = addArtifact(target);
+    graph.addEdge(registeredSource, registeredTarget, new Dependency());
+    return graph.getEdge(registeredSource, registeredTarget);
   }
 
   public Optional<Dependency> getDependency(Artifact source, Artifact target) {
     return Optional.ofNullable(graph.getEdge(source, target));
   }
 
+  /**
+   * Adds all artifacts and dependencies of other graph to this graph. Classpaths of dependencies
+   * already present in this graph are merged into existing dependencies.
+   */
+  public void merge(DependencyGraph other) {
+    invalidateSnapshot();
+    for (var artifact : other.getGraph().vertexSet()) {
+      var existing = registry.intern(artifact);
+      graph.addVertex(existing);
+      if (existing == artifact) {
+        continue;
+      }
+      existing.setLibrary(existing.isLibrary() || artifact.isLibrary());
+    }
+    var otherGraph = other.getGraph();
+    for (var dependency : otherGraph.edgeSet()) {
+      var source = registry.intern(otherGraph.getEdgeSource(dependency));
+      var target = registry.intern(otherGraph.getEdgeTarget(dependency));
+      var existing = graph.getEdge(source, target);
+      if (existing == null) {
+        var copy = new Dependency();
+        copy.setType(dependency.getType());
+        copy.setTransitive(dependency.isTransitive());
+        copy.setDist(dependency.getDist());
+        copy.setClasspaths(dependency.getClasspaths());
+        graph.addEdge(source, target, copy);
+      } else {
+        existing.setClasspaths(existing.getClasspaths() | dependency.getClasspaths());
+      }
+    }
+  }
+
   public DependencyGraph subgraph(Set<Artifact> artifacts) {
     var subgraph = new AsSubgraph<>(graph, artifacts);
-    return new DependencyGraph(subgraph);
+    return new DependencyGraph(subgraph, registry, getSnapshot().restrict(artifacts));
   }
 }
@@ -7,44 +7,166 @@
 
 package org.github.libi.services.dgraph;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.stream.Collectors;
+import java.util.List;
+import java.util.PriorityQueue;
 import org.jgrapht.Graph;
-import org.jgrapht.graph.AbstractBaseGraph;
+import org.jgrapht.graph.DefaultDirectedGraph;
 
 public class DependencyGraphOps {
 
+  /**
+   * Returns graph of selected artifacts with their direct dependencies and with transitive
+   * dependencies going only through not selected artifacts. Distance of transitive dependency is
+   * the lowest number of not selected artifacts on the way. Search starts from every selected
+   * artifact, without copying the main graph, and if the main graph has reachability index, only
+   * artifacts lying between selected ones are visited.
+   */
   public static DependencyGraph findTransitiveDependencies(DependencyGraph mainDependencyGraph,
       DependencyGraph dependencySubgraph) {
     var mainGraph = mainDependencyGraph.getGraph();
-    if (!(mainGraph instanceof AbstractBaseGraph)) {
-      return dependencySubgraph;
-    }
-    var clonedGraph = (Graph<Artifact, Dependency>) ((AbstractBaseGraph) mainGraph).clone();
-    var toRemove = new HashSet<>(mainGraph.vertexSet());
-    toRemove.removeAll(dependencySubgraph.getGraph().vertexSet());
-    toRemove.forEach(removedArtifact -> {
-      var inArtifacts = clonedGraph.incomingEdgesOf(removedArtifact).stream()
-          .map(clonedGraph::getEdgeSource)
-          .collect(Collectors.toSet());
-      var outArtifacts = clonedGraph.outgoingEdgesOf(removedArtifact).stream()
-          .map(clonedGraph::getEdgeTarget)
-          .collect(Collectors.toSet());
-      inArtifacts.forEach(inArtifact -> {
-        outArtifacts.forEach(outArtifact -> {
-          if (clonedGraph.getEdge(inArtifact, outArtifact) == null) {
-            var depIn = clonedGraph.getEdge(inArtifact, removedArtifact);
-            var depOut = clonedGraph.getEdge(removedArtifact, outArtifact);
-            var transitiveDep = new Dependency();
-            transitiveDep.setTransitive(true);
-            transitiveDep.setDist(1 + depIn.getDist() + depOut.getDist());
-            clonedGraph.addEdge(inArtifact, outArtifact, transitiveDep);
+    var snapshot = mainDependencyGraph.getSnapshot();
+    Graph<Artifact, Dependency> graph = new DefaultDirectedGraph<>(Dependency.class);
+    var selected = new BitSet(snapshot.size());
+    dependencySubgraph.getGraph().vertexSet().forEach(artifact -> {
+      graph.addVertex(artifact);
+      var v = snapshot.ordinal(artifact);
+      if (v >= 0) {
+        selected.set(v);
+      }
+    });
+    var onPaths = mainDependencyGraph.getReachabilityIndex()
+        .map(index -> index.between(selected, selected))
+        .orElse(null);
+    var visited = new BitSet(snapshot.size());
+    var dists = new int[snapshot.size()];
+    var queue = new int[snapshot.size()];
+    for (int s = selected.nextSetBit(0); s >= 0; s = selected.nextSetBit(s + 1)) {
+      var source = snapshot.artifact(s);
+      visited.clear();
+      var tail = 0;
+      for (int i = snapshot.outBegin(s); i < snapshot.outEnd(s); i++) {
+        var w = snapshot.outTarget(i);
+        if (selected.get(w)) {
+          var target = snapshot.artifact(w);
+          graph.addEdge(source, target, mainGraph.getEdge(source, target));
+        } else if (snapshot.contains(w) && (onPaths == null || onPaths.get(w))
+            && !visited.get(w)) {
+          visited.set(w);
+          dists[w] = 1;
+          queue[tail++] = w;
+        }
+      }
+      // breadth first, so the first transitive dependency found has the lowest distance
+      for (int head = 0; head < tail; head++) {
+        var x = queue[head];
+        for (int i = snapshot.outBegin(x); i < snapshot.outEnd(x); i++) {
+          var w = snapshot.outTarget(i);
+          if (selected.get(w)) {
+            var target = snapshot.artifact(w);
+            if (graph.getEdge(source, target) == null) {
+              var transitiveDep = new Dependency();
+              transitiveDep.setTransitive(true);
+              transitiveDep.setDist(dists[x]);
+              graph.addEdge(source, target, transitiveDep);
+            }
+          } else if (snapshot.contains(w) && (onPaths == null || onPaths.get(w))
+              && !visited.get(w)) {
+            visited.set(w);
+            dists[w] = dists[x] + 1;
+            queue[tail++] = w;
           }
-        });
+        }
+      }
+    }
+    return new DependencyGraph(graph);
+  }
+
+  /**
+   * Returns strongly connected components of the graph in topological order, dependencies before
+   * artifacts depending on them. Components ready at the same time are ordered by artifact ids, and
+   * so are artifacts in every component.
+   */
+  public static List<List<Artifact>> topologicalOrder(DependencyGraph dependencyGraph) {
+    var sccIndex = dependencyGraph.getSccIndex();
+    var snapshot = sccIndex.getSnapshot();
+    var componentCount = sccIndex.getComponentCount();
+    var components = new ArrayList<List<Artifact>>(componentCount);
+    var remainingSuccessors = new int[componentCount];
+    for (int c = 0; c < componentCount; c++) {
+      var artifacts = new ArrayList<Artifact>();
+      sccIndex.forEachMember(c, v -> artifacts.add(snapshot.artifact(v)));
+      artifacts.sort(Comparator.comparing(Artifact::getId));
+      components.add(artifacts);
+      var component = c;
+      sccIndex.forEachSuccessor(c, d -> remainingSuccessors[component]++);
+    }
+    var ready = new PriorityQueue<Integer>(
+        Comparator.comparing(c -> components.get(c).get(0).getId()));
+    for (int c = 0; c < componentCount; c++) {
+      if (remainingSuccessors[c] == 0) {
+        ready.add(c);
+      }
+    }
+    var result = new ArrayList<List<Artifact>>(componentCount);
+    while (!ready.isEmpty()) {
+      int c = ready.poll();
+      result.add(components.get(c));
+      sccIndex.forEachPredecessor(c, p -> {
+        if (--remainingSuccessors[p] == 0) {
+          ready.add(p);
+        }
       });
-      clonedGraph.removeVertex(removedArtifact);
-    });
+    }
+    return result;
+  }
 
-    return new DependencyGraph(clonedGraph);
+  /**
+   * Returns graph with the same artifacts and without dependencies implied by other ones: edge
+   * from A to C is removed if C can be reached from A through other artifact. Dependencies inside
+   * strongly connected components are all kept, and so are all dependencies between two components
+   * if they are not implied.
+   */
+  public static DependencyGraph transitiveReduction(DependencyGraph dependencyGraph) {
+    var sccIndex = dependencyGraph.getSccIndex();
+    var snapshot = sccIndex.getSnapshot();
+    var componentCount = sccIndex.getComponentCount();
+    // components reachable with at least one edge, successors have lower numbers
+    var descendants = new BitSet[componentCount];
+    var keptEdges = new HashSet<Long>();
+    for (int c = 0; c < componentCount; c++) {
+      var reachable = new BitSet(componentCount);
+      var implied = new BitSet(componentCount);
+      for (int i = sccIndex.successorBegin(c); i < sccIndex.successorEnd(c); i++) {
+        var d = sccIndex.successor(i);
+        reachable.set(d);
+        reachable.or(descendants[d]);
+        implied.or(descendants[d]);
+      }
+      for (int i = sccIndex.successorBegin(c); i < sccIndex.successorEnd(c); i++) {
+        var d = sccIndex.successor(i);
+        if (!implied.get(d)) {
+          keptEdges.add((long) c << 32 | d);
+        }
+      }
+      descendants[c] = reachable;
+    }
+    var graph = dependencyGraph.getGraph();
+    Graph<Artifact, Dependency> reduced = new DefaultDirectedGraph<>(Dependency.class);
+    graph.vertexSet().forEach(reduced::addVertex);
+    graph.edgeSet().forEach(dependency -> {
+      var source = graph.getEdgeSource(dependency);
+      var target = graph.getEdgeTarget(dependency);
+      var sourceComponent = sccIndex.component(snapshot.ordinal(source));
+      var targetComponent = sccIndex.component(snapshot.ordinal(target));
+      if (sourceComponent == targetComponent
+          || keptEdges.contains((long) sourceComponent << 32 | targetComponent)) {
+        reduced.addEdge(source, target, dependency);
+      }
+    });
+    return new DependencyGraph(reduced);
   }
 }
@@ -9,74 +9,243 @@ package org.github.libi.services.dgraph;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.github.libi.cmdtree.GradleCommandTreeReader;
+import org.github.libi.cmdtree.GradleDependencyTreeParser;
+import org.github.libi.cmdtree.GradleTaskOutputSplitter;
+import org.github.libi.services.extapp.ProcessFailedException;
+import org.github.libi.services.extapp.ProcessRunner.ProcessCancelledException;
 import org.github.libi.services.libiel.VerticeSet;
 import org.jgrapht.Graph;
 import org.jgrapht.nio.Attribute;
 import org.jgrapht.nio.AttributeType;
 import org.jgrapht.nio.DefaultAttribute;
 import org.jgrapht.nio.dot.DOTExporter;
-import org.jgrapht.nio.json.JSONExporter;
-import org.jgrapht.nio.json.JSONImporter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class DependencyGraphService {
 
-  private final AtomicReference<DependencyGraph> workingGraph = new AtomicReference<>();
+  private final AtomicReference<GraphVersion> workingGraph = new AtomicReference<>();
 
-  private GradlewService gradlewService;
+  private final AtomicLong versions = new AtomicLong();
+
+  private final GraphStore loadedGraphs = new GraphStore();
+
+  private final ScanCache scanCache = new ScanCache(new File("cache"));
+
+  private GradleBuildService gradlewService;
+
+  private DGraphConfigProperties dGraphConfigProperties = new DGraphConfigProperties();
 
   public DependencyGraph buildDependencyGraphUsingGradlew(Set<String> dirs) {
-    var graph = new DependencyGraph();
-    dirs.stream().map(File::new).forEach(file -> addDependencyRecursive(file, graph, 3));
-    workingGraph.set(graph);
+    return buildDependencyGraphUsingGradlew(dirs, ScanOptions.builder().build());
+  }
+
+  /**
+   * Scans gradle builds found in given directories. Every build is scanned as a single task, so no
+   * more than one gradlew process is run for the build at once, but up to threads builds are
+   * scanned in parallel. Partial graphs are added to the builder by scanning threads as builds
+   * finish, and the result is the same as for serial scan only because the builder sorts artifacts
+   * and dependencies by id.
+   */
+  public DependencyGraph buildDependencyGraphUsingGradlew(Set<String> dirs, ScanOptions options) {
+    var builder = new ConcurrentDependencyGraphBuilder();
+    scanBuilds(findBuildDirs(dirs, options), options, builder, (dir, buildScan) -> {
+    });
+    var graph = builder.build();
+    publish(null, graph, 0);
     return graph;
   }
 
+  /**
+   * Scans directories and saves graph under given name. In incremental mode only builds with
+   * changed fingerprint are scanned and their artifacts and dependencies are replaced in previously
+   * saved graph. Builds which were scanned only partially are kept in the index with fingerprint
+   * which never matches, so they are scanned again by the next incremental scan. Fingerprints are
+   * computed and the index is written only in incremental mode.
+   */
+  public DependencyGraph scanDir(Set<String> dirs, String name, ScanOptions options) {
+    var graphFile = getGraphFile(name);
+    var previousGraphFile = findGraphFile(name);
+    var indexFile = getScanIndexFile(name);
+    var incremental = options.isIncremental() && previousGraphFile.exists() && indexFile.exists();
+    var previousGraph = incremental ? readGraph(previousGraphFile) : new DependencyGraph();
+    var previousIndex = incremental ? ScanIndex.read(indexFile) : new ScanIndex();
+    var index = new ScanIndex();
+    var fingerprints = new HashMap<File, String>();
+    var buildDirs = new ArrayList<File>();
+    findBuildDirs(dirs, options).forEach(dir -> {
+      if (!options.isIncremental()) {
+        buildDirs.add(dir);
+        return;
+      }
+      var fingerprint = BuildFingerprint.of(dir);
+      var previousEntry = previousIndex.get(dir)
+          .filter(entry -> entry.getFingerprint().equals(fingerprint));
+      if (previousEntry.isPresent()) {
+        index.put(previousEntry.get());
+      } else {
+        fingerprints.put(dir, fingerprint);
+        buildDirs.add(dir);
+      }
+    });
+    if (incremental) {
+      System.out.printf("%d projects changed, %d projects not changed.\n",
+          buildDirs.size(), index.getEntries().size());
+    }
+    index.removeStaleBuilds(previousIndex, previousGraph);
+    var builder = new ConcurrentDependencyGraphBuilder();
+    builder.addGraph(previousGraph);
+    scanBuilds(buildDirs, options, builder, (dir, buildScan) -> {
+      if (options.isIncremental()) {
+        index.put(ScanIndex.Entry.of(dir,
+            buildScan.complete ? fingerprints.get(dir) : ScanIndex.INCOMPLETE, buildScan.graph));
+      }
+    });
+    var graph = builder.build();
+    saveGraph(graph, graphFile);
+    if (options.isIncremental()) {
+      index.write(indexFile);
+    } else {
+      try {
+        Files.deleteIfExists(indexFile.toPath());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    if (options.isHistory()) {
+      var version = getGraphHistory(name).append(graph);
+      System.out.printf("Saved version %d in history of graph %s.\n", version, name);
+    }
+    publish(name, graph, graphFile.lastModified());
+    return graph;
+  }
+
+  /**
+   * Scans gradle builds. Every build is scanned as a single task, so no more than one gradlew
+   * process is run for the build at once, but up to threads builds are scanned in parallel. Every
+   * scanning thread adds its partial graph to the builder, and build scans are also passed to
+   * consumer in directory order.
+   */
+  private void scanBuilds(List<File> buildDirs, ScanOptions options,
+      ConcurrentDependencyGraphBuilder builder,
+      BiConsumer<File, BuildScan> buildScanConsumer) {
+    var executor = Executors.newFixedThreadPool(Math.max(1, options.getThreads()));
+    try {
+      var futures = buildDirs.stream()
+          .map(dir -> executor.submit(() -> {
+            var buildScan = scanBuild(dir, options);
+            builder.addGraph(buildScan.graph);
+            return buildScan;
+          }))
+          .collect(Collectors.toList());
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          buildScanConsumer.accept(buildDirs.get(i), futures.get(i).get());
+        } catch (ExecutionException e) {
+          System.out.println("Scanning failed for " + buildDirs.get(i) + ": " + e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns file to save graph in configured format.
+   */
+  public File getGraphFile(String name) {
+    return new File("graphs/" + name + dGraphConfigProperties.getGraphFormat().getExtension());
+  }
+
+  /**
+   * Returns existing graph file, preferring file in configured format, or file in configured format
+   * if there is none.
+   */
+  public File findGraphFile(String name) {
+    var file = getGraphFile(name);
+    if (file.exists()) {
+      return file;
+    }
+    return Arrays.stream(GraphFormat.values())
+        .map(format -> new File("graphs/" + name + format.getExtension()))
+        .filter(File::exists)
+        .findFirst()
+        .orElse(file);
+  }
+
+  public File getScanIndexFile(String name) {
+    return new File("graphs/" + name + ".index");
+  }
+
+  public GraphHistory getGraphHistory(String name) {
+    return new GraphHistory(new File("graphs/" + name + ".history"),
+        dGraphConfigProperties.getHistoryCheckpointInterval());
+  }
+
   @Autowired
-  public void setGradlewService(GradlewService gradlewService) {
+  public void setGradlewService(GradleBuildService gradlewService) {
     this.gradlewService = gradlewService;
   }
 
+  @Autowired
+  public void setDGraphConfigProperties(DGraphConfigProperties dGraphConfigProperties) {
+    this.dGraphConfigProperties = dGraphConfigProperties;
+  }
+
   public List<Project> getProjects(File dir) {
-    var listener = new ProjectsTreeLineListener();
-    var treeReader = new GradleCommandTreeReader(listener);
-    gradlewService.processGradlewProjectsOutput(dir,
-        treeReader::readLines
-    );
-    listener.getProjects().forEach(project -> project.setDir(dir));
-    return listener.getProjects();
+    var projects = new AtomicReference<List<Project>>(List.of());
+    gradlewService.processGradlewProjectsOutput(dir, lines -> {
+      var listener = new ProjectsTreeLineListener();
+      new GradleCommandTreeReader(listener).readLines(lines);
+      projects.set(listener.getProjects());
+    });
+    projects.get().forEach(project -> project.setDir(dir));
+    return projects.get();
   }
 
   public void scanDependencies(Project project, DependencyGraph graph,
       Map<String, Artifact> project2Artifact) {
     System.out.println("Scanning dependencies for project " + project.getName());
-    var artifact = project2Artifact.get(project.getName());
-    var listener = new DGraphTreeLineListener(graph, artifact);
-    var treeReader = new GradleCommandTreeReader(listener);
-    listener.setProjectName2ArtifactDict(project2Artifact);
-    listener.addArtifact(artifact);
-    gradlewService.processGradlewDependencies(project, treeReader::readLines);
+    var parser = createDependenciesParser(project, graph, project2Artifact);
+    gradlewService.processGradlewDependencies(project, parser::parse);
+  }
+
+  /**
+   * Scans dependencies of the project using scan cache. Project is scanned with gradlew only if
+   * there is no cache entry for build fingerprint and the project.
+   */
+  public void scanDependencies(Project project, DependencyGraph graph,
+      Map<String, Artifact> project2Artifact, String buildFingerprint) {
+    scanDependencies(project, graph, project2Artifact, buildFingerprint,
+        projectGraph -> scanDependencies(project, projectGraph, project2Artifact));
   }
 
   public Optional<Artifact> getArtifact(Project project) {
-    var properties = gradlewService.getProperties(project);
+    return getArtifact(gradlewService.getProperties(project));
+  }
+
+  public Optional<Artifact> getArtifact(Map<String, String> properties) {
     var group = properties.get("group");
     var name = properties.get("name");
     if (group != null && name != null) {
@@ -86,82 +255,161 @@ public class DependencyGraphService {
     }
   }
 
+  /**
+   * Saves graph in format given by file extension, json if the extension is not known.
+   */
   public void saveGraph(DependencyGraph dependencyGraph, File file) {
     try {
       Files.createDirectories(file.getParentFile().toPath());
+      if (GraphFormat.of(file).orElse(GraphFormat.JSON) == GraphFormat.BINARY) {
+        BinaryGraphFile.write(dependencyGraph, file);
+      } else {
+        JsonGraphFile.write(dependencyGraph, file);
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    var exporter = new JSONExporter<Artifact, Dependency>(Artifact::getId);
-    exporter.setVertexAttributeProvider((v) -> {
-      Map<String, Attribute> map = new LinkedHashMap<>();
-      map.put("isLibrary", DefaultAttribute.createAttribute(v.isLibrary()));
-      map.put("runtimeDependencies",
-          DefaultAttribute.createAttribute(
-              String.join(",", v.getRuntimeDependencies())));
-      map.put("compileDependencies",
-          DefaultAttribute.createAttribute(
-              String.join(",", v.getCompileDependencies())));
-      return map;
-    });
-    exporter.setEdgeAttributeProvider((e) -> {
-      Map<String, Attribute> map = new LinkedHashMap<>();
-      if (e.getType() != null) {
-        map.put("type", DefaultAttribute.createAttribute(e.getType().toString()));
+  }
+
+  public void loadGraph(File file) {
+    var name = GraphFormat.of(file)
+        .map(format -> format.getName(file))
+        .orElse(file.getName());
+    publish(name, readGraph(file), file.lastModified());
+  }
+
+  /**
+   * Makes named graph the working graph. Graph kept in memory is used if its file has not been
+   * changed since it was read or written, otherwise the graph is read from file.
+   *
+   * @return true if the graph was already in memory
+   */
+  public boolean loadGraph(String name) {
+    var file = findGraphFile(name);
+    var loaded = findLoadedGraph(name, file);
+    if (loaded.isPresent()) {
+      workingGraph.set(loaded.get());
+      return true;
+    }
+    loadGraph(file);
+    return false;
+  }
+
+  /**
+   * Returns named graph without changing the working graph. Graph is read from file if it is not
+   * kept in memory or its file has been changed. Name 'name@version' refers to version from graph
+   * history.
+   */
+  public DependencyGraph getGraph(String name) {
+    var file = findGraphFile(name);
+    var versionStart = name.lastIndexOf('@');
+    if (!file.exists() && versionStart > 0) {
+      int version;
+      try {
+        version = Integer.parseInt(name.substring(versionStart + 1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("No such graph or version: " + name);
       }
-      return map;
-    });
-    try (var writer = new FileWriter(file)) {
-      Files.createDirectories(file.getParentFile().toPath());
-      exporter.exportGraph(dependencyGraph.getGraph(), writer);
-    } catch (IOException e) {
+      return getGraphVersion(name.substring(0, versionStart), version).getGraph();
     }
+    return findLoadedGraph(name, file)
+        .orElseGet(() -> keep(name, readGraph(file), file.lastModified()))
+        .getGraph();
   }
 
-  public void loadGraph(File file) {
-    var importer = new JSONImporter<Artifact, Dependency>();
-    importer.setVertexFactory(Artifact::new);
-    importer.setVertexWithAttributesFactory((id, attrs) -> {
-      var v = new Artifact(id);
-      Optional.ofNullable(attrs.get("isLibrary"))
-          .map(Attribute::getValue)
-          .ifPresent(value -> {
-            if ("true".equals(value)) {
-              v.setLibrary(true);
-            }
-          });
-      Optional.ofNullable(attrs.get("runtimeDependencies"))
-          .map(Attribute::getValue)
-          .ifPresent(value -> v.getRuntimeDependencies().addAll(Arrays.asList(value.split(","))));
-      Optional.ofNullable(attrs.get("compileDependencies"))
-          .map(Attribute::getValue)
-          .ifPresent(value -> v.getCompileDependencies().addAll(Arrays.asList(value.split(","))));
-      return v;
-    });
-    importer.setEdgeWithAttributesFactory(attrs -> {
-      var dependency = new Dependency();
-      Optional.ofNullable(attrs.get("type"))
-          .map(Attribute::getValue)
-          .flatMap(Dependency.Type::fromString)
-          .ifPresent(dependency::setType);
-      return dependency;
-    });
-    var graph = new DependencyGraph();
-    importer.importGraph(graph.getGraph(), file);
-    this.workingGraph.set(graph);
+  private Optional<GraphVersion> findLoadedGraph(String name, File file) {
+    return loadedGraphs.get(name)
+        .filter(graphVersion -> graphVersion.getFileTimestamp() == file.lastModified());
+  }
+
+  /**
+   * Makes given version from graph history the working graph. The version is kept in memory as
+   * graph named 'name@version'.
+   */
+  public void loadGraphVersion(String name, int version) {
+    workingGraph.set(getGraphVersion(name, version));
+  }
+
+  private GraphVersion getGraphVersion(String name, int version) {
+    var versionName = name + "@" + version;
+    return loadedGraphs.get(versionName)
+        .orElseGet(() -> keep(versionName, getGraphHistory(name).read(version), 0));
+  }
+
+  public List<GraphVersion> getLoadedGraphs() {
+    return loadedGraphs.getGraphs();
+  }
+
+  /**
+   * Reads graph in format given by file extension, json if the extension is not known.
+   */
+  public DependencyGraph readGraph(File file) {
+    try {
+      if (GraphFormat.of(file).orElse(GraphFormat.JSON) == GraphFormat.BINARY) {
+        return BinaryGraphFile.read(file);
+      }
+      return JsonGraphFile.read(file);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   public DependencyGraph getWorkingGraph() {
+    return Optional.ofNullable(workingGraph.get()).map(GraphVersion::getGraph).orElse(null);
+  }
+
+  /**
+   * Returns working graph together with its version. Queries should use the returned graph until
+   * they finish, as working graph can be replaced meanwhile.
+   */
+  public GraphVersion getWorkingGraphVersion() {
     return workingGraph.get();
   }
 
+  /**
+   * Makes graph the working graph with new version. Queries running on previous working graph are
+   * not affected.
+   */
+  private void publish(String name, DependencyGraph graph, long fileTimestamp) {
+    workingGraph.set(keep(name, graph, fileTimestamp));
+  }
+
+  /**
+   * Freezes graph, builds its query snapshot, strongly connected components (and reachability
+   * index if enabled), so they are not built by first query, and keeps named graph in memory.
+   */
+  private GraphVersion keep(String name, DependencyGraph graph, long fileTimestamp) {
+    graph.freeze();
+    graph.getSccIndex();
+    if (dGraphConfigProperties.isReachabilityIndex()) {
+      var index = graph.buildReachabilityIndex(
+          dGraphConfigProperties.getReachabilityIndexMaxClosure().toBytes());
+      System.out.printf("Built reachability index (%s) for %d components using %d KB.\n",
+          index.isClosure() ? "closure bitmap" : "interval labels",
+          index.getSccIndex().getComponentCount(), index.getMemoryUsage() / 1024);
+    }
+    var graphVersion = new GraphVersion(name, versions.incrementAndGet(), graph, fileTimestamp);
+    if (name != null) {
+      loadedGraphs.put(graphVersion, dGraphConfigProperties.getLoadedGraphs());
+    }
+    return graphVersion;
+  }
+
+  public void sqlExport(DependencyGraph graph, File file) {
+    try {
+      SqliteGraphExporter.export(graph, file);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public void dotExport(File file) {
     try {
       Files.createDirectories(file.getParentFile().toPath());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    dotExport(workingGraph.get().getGraph(), file);
+    dotExport(getWorkingGraph().getGraph(), file);
   }
 
   public void dotExport(Graph<Artifact, Dependency> graph, File file) {
@@ -175,12 +423,13 @@ public class DependencyGraphService {
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+    var artifactColors = new HashMap<Artifact, String>();
+    colorsToArtifacts.forEach((color, vs) ->
+        vs.getArtifacts().forEach(a -> artifactColors.putIfAbsent(a, color)));
     var exporter = new DOTExporter<Artifact, Dependency>();
     exporter.setVertexAttributeProvider(a -> {
       Map<String, Attribute> attrs = new HashMap<>();
-      colorsToArtifacts.entrySet().stream().filter(e ->
-          e.getValue().contains(a)
-      ).findFirst().map(Entry::getKey).ifPresent(color ->
+      Optional.ofNullable(artifactColors.get(a)).ifPresent(color ->
           {
             attrs.put("style", new DefaultAttribute<>("filled", AttributeType.STRING));
             attrs.put("fillcolor", new DefaultAttribute<>(color, AttributeType.STRING));
@@ -205,27 +454,202 @@ public class DependencyGraphService {
     exporter.exportGraph(graph, file);
   }
 
-  private void addDependencyRecursive(File dir, DependencyGraph graph, int level) {
-    if (level == 0 || !dir.exists() || !dir.isDirectory()) {
-      return;
+  /**
+   * Exports graph of changes built by {@link GraphDiff#toGraph()}. Added artifacts and dependencies
+   * are green, removed ones are red and removed dependencies are dashed.
+   */
+  public void dotExportDiff(GraphDiff diff, DependencyGraph diffGraph, File file) {
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
+    var addedArtifacts = new HashSet<>(diff.getAddedArtifacts());
+    var removedArtifacts = new HashSet<>(diff.getRemovedArtifacts());
+    var removedDependencies = diff.getRemovedDependencySet();
+    var exporter = new DOTExporter<Artifact, Dependency>();
+    exporter.setVertexAttributeProvider(a -> {
+      Map<String, Attribute> attrs = new HashMap<>();
+      var color = addedArtifacts.contains(a) ? "palegreen"
+          : removedArtifacts.contains(a) ? "lightpink" : null;
+      if (color != null) {
+        attrs.put("style", new DefaultAttribute<>("filled", AttributeType.STRING));
+        attrs.put("fillcolor", new DefaultAttribute<>(color, AttributeType.STRING));
+      }
+      attrs.put("label", new DefaultAttribute<>(a.getId(), AttributeType.STRING));
+      return attrs;
+    });
+    exporter.setEdgeAttributeProvider(d -> {
+      Map<String, Attribute> attrs = new HashMap<>();
+      if (removedDependencies.contains(d)) {
+        attrs.put("style", new DefaultAttribute<>("dashed", AttributeType.STRING));
+        attrs.put("color", new DefaultAttribute<>("red", AttributeType.STRING));
+      } else {
+        attrs.put("color", new DefaultAttribute<>("green", AttributeType.STRING));
+      }
+      return attrs;
+    });
+    exporter.setGraphAttributeProvider(() -> {
+      Map<String, Attribute> attrs = new HashMap<>();
+      attrs.put("rankdir", new DefaultAttribute<>("LR", AttributeType.STRING));
+      return attrs;
+    });
+    exporter.exportGraph(diffGraph.getGraph(), file);
+  }
 
-    var gradlewFile = new File(dir, "gradlew");
-    if (gradlewFile.exists()) {
-      addDependency(dir, graph);
+  private List<File> findBuildDirs(Set<String> dirs, ScanOptions options) {
+    return new BuildDiscovery(options.getDepth(), options.getMode() != ScanMode.STATIC)
+        .find(dirs);
+  }
+
+  private BuildScan scanBuild(File dir, ScanOptions options) {
+    var graph = new DependencyGraph();
+    var fingerprint = options.isCache() && options.getMode() == ScanMode.TASKS
+        ? BuildFingerprint.of(dir) : null;
+    var complete = true;
+    if (options.getMode() == ScanMode.STATIC) {
+      new StaticBuildScanner(graph).scan(dir);
+    } else if (options.getMode() == ScanMode.INIT_SCRIPT) {
+      addDependencyFromModel(dir, graph);
+    } else if (options.isBatched()) {
+      complete = addDependencyBatched(dir, graph, fingerprint);
     } else {
-      Stream.of(dir.listFiles()).sorted(Comparator.comparing(File::getName)).forEach(subDir -> {
-        if (subDir.isDirectory()) {
-          addDependencyRecursive(subDir, graph, level - 1);
-        }
-      });
+      complete = addDependency(dir, graph, fingerprint);
     }
+    return new BuildScan(graph, complete);
+  }
+
+  private void addDependencyFromModel(File dir, DependencyGraph graph) {
+    System.out.println("Scanning dependency model of " + dir);
+    gradlewService.processGradlewModel(dir, new GradleModelReader(graph)::readLines);
   }
 
-  private void addDependency(File dir, DependencyGraph graph) {
+  /**
+   * Scans every project of the build with separate gradlew calls. Returns false if scanning some
+   * projects failed.
+   */
+  private boolean addDependency(File dir, DependencyGraph graph, String fingerprint) {
     var projects = getProjects(dir);
     var project2Artifact = new HashMap<String, Artifact>();
-    projects.forEach(project -> getArtifact(project).ifPresent(artifact -> project2Artifact.put(project.getName(), artifact)));
-    getProjects(dir).forEach(project -> scanDependencies(project, graph, project2Artifact));
+    var complete = true;
+    for (var project : projects) {
+      complete &= scanProject(project, () -> getArtifact(project)
+          .ifPresent(artifact -> project2Artifact.put(project.getName(), artifact)));
+    }
+    for (var project : projects) {
+      complete &= scanProject(project,
+          () -> scanDependencies(project, graph, project2Artifact, fingerprint));
+    }
+    return complete;
+  }
+
+  /**
+   * Runs scan of single project. Failure of gradlew command is reported and the scan goes on with
+   * other projects. Returns false if the scan failed.
+   */
+  private boolean scanProject(Project project, Runnable scan) {
+    try {
+      scan.run();
+      return true;
+    } catch (ProcessCancelledException e) {
+      throw e;
+    } catch (ProcessFailedException e) {
+      System.out.println("Scanning failed for project " + project.getName() + " in "
+          + project.getDir() + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Scans all projects of the build with single gradlew call, running properties and dependencies
+   * tasks of every project, so build configuration is done only once. Returns false if scanning
+   * some projects failed.
+   */
+  private boolean addDependencyBatched(File dir, DependencyGraph graph, String fingerprint) {
+    var projects = getProjects(dir);
+    var cachedProjects = projects.stream()
+        .filter(project -> fingerprint != null
+            && scanCache.contains(scanCache.getKey(fingerprint, project)))
+        .collect(Collectors.toSet());
+    var tasks = new ArrayList<String>();
+    projects.forEach(project -> tasks.add(project.getTaskPath("properties")));
+    projects.stream()
+        .filter(project -> !cachedProjects.contains(project))
+        .forEach(project -> tasks.add(project.getTaskPath("dependencies")));
+    System.out.println("Scanning dependencies for " + (projects.size() - cachedProjects.size())
+        + " projects in " + dir);
+    var splitter = new GradleTaskOutputSplitter();
+    gradlewService.processGradlewTasks(dir, tasks, splitter::readLines);
+    var project2Artifact = new HashMap<String, Artifact>();
+    projects.forEach(project -> getArtifact(
+        GradlewService.parseProperties(splitter.getTaskOutput(project.getTaskPath("properties"))))
+        .ifPresent(artifact -> project2Artifact.put(project.getName(), artifact)));
+    var complete = true;
+    for (var project : projects) {
+      complete &= scanProject(project,
+          () -> scanDependencies(project, graph, project2Artifact, fingerprint, projectGraph -> {
+            var taskPath = project.getTaskPath("dependencies");
+            if (splitter.isFailed(taskPath)) {
+              throw new ProcessFailedException("Task " + taskPath + " failed");
+            }
+            if (!splitter.isRun(taskPath)) {
+              throw new ProcessFailedException("Task " + taskPath + " was not run");
+            }
+            try {
+              createDependenciesParser(project, projectGraph, project2Artifact)
+                  .parse(splitter.getTaskReader(taskPath));
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          }));
+    }
+    return complete;
+  }
+
+  /**
+   * Checks scan cache before scanning project dependencies with scanner. If fingerprint is null or
+   * project artifact is not known (its properties task failed), cache is not used.
+   */
+  private void scanDependencies(Project project, DependencyGraph graph,
+      Map<String, Artifact> project2Artifact, String fingerprint,
+      Consumer<DependencyGraph> scanner) {
+    var artifact = project2Artifact.get(project.getName());
+    if (fingerprint == null || artifact == null) {
+      scanner.accept(graph);
+      return;
+    }
+    var cacheKey = scanCache.getKey(fingerprint, project);
+    if (scanCache.read(cacheKey, artifact, graph)) {
+      System.out.println("Using cached dependencies for project " + project.getName());
+      return;
+    }
+    var projectGraph = new DependencyGraph();
+    scanner.accept(projectGraph);
+    scanCache.write(cacheKey, projectGraph);
+    graph.merge(projectGraph);
+  }
+
+  private GradleDependencyTreeParser createDependenciesParser(Project project,
+      DependencyGraph graph, Map<String, Artifact> project2Artifact) {
+    var artifact = project2Artifact.get(project.getName());
+    var listener = new DGraphTreeLineListener(graph);
+    listener.setProjectName2ArtifactDict(project2Artifact);
+    listener.addArtifact(artifact);
+    return new GradleDependencyTreeParser(listener);
+  }
+
+  /**
+   * Graph of scanned build. Build scan is not complete if scanning some of its projects failed.
+   */
+  private static class BuildScan {
+
+    private final DependencyGraph graph;
+
+    private final boolean complete;
+
+    private BuildScan(DependencyGraph graph, boolean complete) {
+      this.graph = graph;
+      this.complete = complete;
+    }
   }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.github.libi.services.extapp.ProcessRunner.OutputConsumer;
+
+/**
+ * Runs gradle tasks used for scanning and passes their output to consumers, in the same format as
+ * printed by gradlew in plain console.
+ */
+public interface GradleBuildService {
+
+  /**
+   * Passes projects task output to consumer. The task can be retried, and consumer is then called
+   * again with output of the new run.
+   */
+  void processGradlewProjectsOutput(File dir, Consumer<Stream<String>> consumer);
+
+  /**
+   * Passes dependencies task output to consumer as it is printed.
+   */
+  void processGradlewDependencies(Project project, OutputConsumer consumer);
+
+  void processGradlewTasks(File dir, List<String> tasks, Consumer<Stream<String>> consumer);
+
+  void processGradlewModel(File dir, Consumer<Stream<String>> consumer);
+
+  Map<String, String> getProperties(Project project);
+}
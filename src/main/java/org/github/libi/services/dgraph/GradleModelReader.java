@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reads dependency model written by libi-model.gradle init script into dependency graph.
+ */
+@RequiredArgsConstructor
+public class GradleModelReader {
+
+  private static final String PROJECT_KEY_PREFIX = "project:";
+
+  private static final String MODULE_KEY_PREFIX = "module:";
+
+  private static final Map<String, DependencyCategory> CONFIGURATION_2_CATEGORY = Map.of(
+      "compileClasspath", DependencyCategory.COMPILE_CLASSPATH,
+      "runtimeClasspath", DependencyCategory.RUNTIME_CLASSPATH
+  );
+
+  private final DependencyGraph graph;
+
+  private final Map<String, Artifact> projectPath2Artifact = new HashMap<>();
+
+  public void readLines(Stream<String> lines) {
+    lines.forEach(this::readLine);
+  }
+
+  private void readLine(String line) {
+    var tokens = line.split("\t");
+    if ("project".equals(tokens[0]) && tokens.length == 4) {
+      addProject(tokens[1], tokens[2], tokens[3]);
+    } else if ("dependency".equals(tokens[0]) && tokens.length == 5) {
+      addDependency(tokens[1], tokens[2], tokens[3], tokens[4]);
+    }
+  }
+
+  private void addProject(String path, String group, String name) {
+    if (group.isEmpty()) {
+      return;
+    }
+    var artifact = graph.addArtifact(new Artifact(group, name));
+    projectPath2Artifact.put(path, artifact);
+  }
+
+  private void addDependency(String projectPath, String configuration, String sourceKey,
+      String targetKey) {
+    var source = getArtifact(sourceKey);
+    var target = getArtifact(targetKey);
+    if (source == null || target == null) {
+      return;
+    }
+    var dependency = graph.addDependency(source, target);
+    Optional.ofNullable(CONFIGURATION_2_CATEGORY.get(configuration))
+        .ifPresent(dependency::addClasspath);
+  }
+
+  private Artifact getArtifact(String key) {
+    if (key.startsWith(PROJECT_KEY_PREFIX)) {
+      return projectPath2Artifact.get(key.substring(PROJECT_KEY_PREFIX.length()));
+    }
+    if (key.startsWith(MODULE_KEY_PREFIX)) {
+      return new Artifact(key.substring(MODULE_KEY_PREFIX.length()));
+    }
+    return null;
+  }
+}
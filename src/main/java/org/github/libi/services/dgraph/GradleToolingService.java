@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.github.libi.services.extapp.ExtAppConfigProperties;
+import org.github.libi.services.extapp.ProcessFailedException;
+import org.github.libi.services.extapp.ProcessRunner.OutputConsumer;
+import org.github.libi.services.extapp.ProcessRunner.ProcessCancelledException;
+import org.gradle.tooling.CancellationTokenSource;
+import org.gradle.tooling.GradleConnectionException;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ProjectConnection;
+import org.gradle.tooling.ResultHandler;
+import org.gradle.tooling.model.GradleProject;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+/**
+ * Gradle backend using Gradle Tooling API. Single connection is kept open for every build, so
+ * gradle daemon is started and connected only once per build, no matter how many tasks are run.
+ * Task output is passed to consumer through a pipe while the build runs, and builds are cancelled
+ * after gradlew timeout, like gradlew processes run by {@link GradlewService}. Failed builds are
+ * reported with {@link ProcessFailedException}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "libi.extapp", name = "gradle-backend", havingValue = "tooling-api")
+@Primary
+public class GradleToolingService implements GradleBuildService {
+
+  private final GradlewService gradlewService;
+
+  private final ExtAppConfigProperties extAppConfigProperties;
+
+  private final Map<File, ProjectConnection> connections = new ConcurrentHashMap<>();
+
+  private final Set<CancellationTokenSource> running = ConcurrentHashMap.newKeySet();
+
+  private final ScheduledExecutorService timeoutExecutor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "libi-gradle-timeout");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Project tree is read from the GradleProject model and passed to consumer as lines of gradlew
+   * projects task output.
+   */
+  @Override
+  public void processGradlewProjectsOutput(File dir, Consumer<Stream<String>> consumer) {
+    try {
+      var rootProject = getConnection(dir).getModel(GradleProject.class);
+      var lines = new ArrayList<String>();
+      lines.add("Root project '" + rootProject.getName() + "'");
+      addProjectLines(rootProject, 1, lines);
+      consumer.accept(lines.stream());
+    } catch (GradleConnectionException | IllegalStateException e) {
+      throw new ProcessFailedException("Cannot read projects of " + dir, e);
+    }
+  }
+
+  @Override
+  public void processGradlewDependencies(Project project, OutputConsumer consumer) {
+    runTasks(project.getDir(), List.of(project.getTaskPath("dependencies")),
+        Collections.emptyList(), consumer);
+  }
+
+  @Override
+  public void processGradlewTasks(File dir, List<String> tasks,
+      Consumer<Stream<String>> consumer) {
+    try {
+      runTasks(dir, tasks, List.of("--console=plain", "--continue"), toOutputConsumer(consumer));
+    } catch (ProcessCancelledException e) {
+      throw e;
+    } catch (ProcessFailedException e) {
+      // with --continue tasks of healthy projects have completed and their output has been passed
+      // to consumer, failed ones are marked in output
+      System.out.println(e.getMessage());
+    }
+  }
+
+  @Override
+  public void processGradlewModel(File dir, Consumer<Stream<String>> consumer) {
+    try {
+      var modelFile = Files.createTempFile("libi-model", ".tsv");
+      try {
+        runTasks(dir, List.of("libiModel"),
+            List.of("--init-script", gradlewService.getInitScript().getAbsolutePath(),
+                "-PlibiModelFile=" + modelFile.toAbsolutePath()),
+            reader -> {
+            });
+        try (var lines = Files.lines(modelFile)) {
+          consumer.accept(lines);
+        }
+      } finally {
+        Files.deleteIfExists(modelFile);
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  @Override
+  public Map<String, String> getProperties(Project project) {
+    var properties = new ArrayList<Map<String, String>>();
+    runTasks(project.getDir(), List.of(project.getTaskPath("properties")),
+        Collections.emptyList(),
+        toOutputConsumer(lines -> properties.add(GradlewService.parseProperties(lines))));
+    return properties.isEmpty() ? Collections.emptyMap() : properties.get(0);
+  }
+
+  @PreDestroy
+  public void close() {
+    running.forEach(CancellationTokenSource::cancel);
+    timeoutExecutor.shutdownNow();
+    connections.values().forEach(ProjectConnection::close);
+    connections.clear();
+  }
+
+  /**
+   * Runs tasks and passes their output to consumer on calling thread while the build runs. The
+   * build is cancelled when it times out, when the consumer fails or when calling thread is
+   * interrupted.
+   *
+   * @throws ProcessFailedException if the build failed, timed out or its output could not be read
+   */
+  private void runTasks(File dir, List<String> tasks, List<String> arguments,
+      OutputConsumer consumer) {
+    var timeout = extAppConfigProperties.getGradlewTimeout();
+    var cancellation = GradleConnector.newCancellationTokenSource();
+    var timedOut = new AtomicBoolean();
+    var result = new CompletableFuture<Void>();
+    Pipe pipe;
+    try {
+      pipe = Pipe.open();
+    } catch (IOException e) {
+      throw new ProcessFailedException("Cannot run gradle tasks " + tasks + " in " + dir, e);
+    }
+    var sink = pipe.sink();
+    running.add(cancellation);
+    var timeoutTask = timeoutExecutor.schedule(() -> {
+      timedOut.set(true);
+      cancellation.cancel();
+    }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    try (var reader = new InputStreamReader(Channels.newInputStream(pipe.source()))) {
+      getConnection(dir).newBuild()
+          .forTasks(tasks.toArray(String[]::new))
+          .withArguments(arguments)
+          .setColorOutput(false)
+          .setStandardOutput(Channels.newOutputStream(sink))
+          .withCancellationToken(cancellation.token())
+          .run(new ResultHandler<Void>() {
+            @Override
+            public void onComplete(Void value) {
+              closeQuietly(sink);
+              result.complete(null);
+            }
+
+            @Override
+            public void onFailure(GradleConnectionException failure) {
+              closeQuietly(sink);
+              result.completeExceptionally(failure);
+            }
+          });
+      consumer.accept(reader);
+      reader.transferTo(Writer.nullWriter());
+      result.get();
+    } catch (ClosedByInterruptException | InterruptedException e) {
+      cancellation.cancel();
+      Thread.currentThread().interrupt();
+      throw new ProcessCancelledException("Gradle tasks " + tasks + " cancelled in " + dir);
+    } catch (ExecutionException e) {
+      if (timedOut.get()) {
+        throw new ProcessFailedException(
+            "Gradle tasks " + tasks + " timed out after " + timeout + " in " + dir);
+      }
+      throw new ProcessFailedException("Gradle tasks " + tasks + " failed in " + dir,
+          e.getCause());
+    } catch (IOException | GradleConnectionException | IllegalStateException e) {
+      cancellation.cancel();
+      throw new ProcessFailedException("Cannot run gradle tasks " + tasks + " in " + dir, e);
+    } finally {
+      timeoutTask.cancel(false);
+      running.remove(cancellation);
+      closeQuietly(sink);
+    }
+  }
+
+  private static void closeQuietly(Pipe.SinkChannel sink) {
+    try {
+      sink.close();
+    } catch (IOException e) {
+      log.debug("Cannot close gradle output pipe", e);
+    }
+  }
+
+  private static OutputConsumer toOutputConsumer(Consumer<Stream<String>> consumer) {
+    return reader -> consumer.accept(new BufferedReader(reader).lines());
+  }
+
+  private ProjectConnection getConnection(File dir) {
+    return connections.computeIfAbsent(dir.getAbsoluteFile(), key ->
+        GradleConnector.newConnector()
+            .forProjectDirectory(key)
+            .connect());
+  }
+
+  private void addProjectLines(GradleProject project, int level, List<String> lines) {
+    project.getChildren().forEach(child -> {
+      lines.add("     ".repeat(level - 1) + "+--- Project '" + child.getPath() + "'");
+      addProjectLines(child, level + 1, lines);
+    });
+  }
+}
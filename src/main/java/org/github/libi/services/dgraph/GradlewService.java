@@ -10,75 +10,153 @@ package org.github.libi.services.dgraph;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.Collections;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import org.github.libi.services.extapp.ExtAppConfigProperties;
+import org.github.libi.services.extapp.ProcessFailedException;
+import org.github.libi.services.extapp.ProcessRunner;
+import org.github.libi.services.extapp.ProcessRunner.OutputConsumer;
+import org.github.libi.services.extapp.ProcessRunner.ProcessCancelledException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class GradlewService {
+public class GradlewService implements GradleBuildService {
+
+  private static final String INIT_SCRIPT_RESOURCE = "/gradle/libi-model.gradle";
 
   private final ExtAppConfigProperties extAppConfigProperties;
 
+  private final ProcessRunner processRunner;
+
+  private File initScript;
+
+  /**
+   * Runs command under supervision of {@link ProcessRunner} and passes lines of its output to
+   * consumer while the command runs. Command is not retried.
+   *
+   * @throws ProcessFailedException if the command failed
+   */
   public void processCommandOutput(File dir, Consumer<Stream<String>> consumer,
       String... command) {
-    ProcessBuilder processBuilder = new ProcessBuilder(command).directory(dir);
-    Process process;
-    try {
-      process = processBuilder.start();
-      try (var bis = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-        consumer.accept(bis.lines());
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
+    processCommandOutput(dir, false, toOutputConsumer(consumer), command);
+  }
+
+  /**
+   * Runs command under supervision of {@link ProcessRunner}. If retry is set, command which exited
+   * with non-zero code is run again and consumer is called again with its output.
+   *
+   * @throws ProcessFailedException if the command failed in all attempts
+   */
+  public void processCommandOutput(File dir, boolean retry, OutputConsumer consumer,
+      String... command) {
+    processRunner.run(dir, extAppConfigProperties.getGradlewTimeout(),
+        retry ? extAppConfigProperties.getProcessRetries() : 0,
+        extAppConfigProperties.getProcessRetryBackoff(),
+        List.of(command), consumer);
   }
 
+  @Override
   public void processGradlewProjectsOutput(File dir, Consumer<Stream<String>> consumer) {
-    processCommandOutput(dir, consumer, getGradlewCmd(), "projects");
+    processCommandOutput(dir, true, toOutputConsumer(consumer), getGradlewCmd(), "projects");
   }
 
-  public void processGradlewRootDependencies(File dir, Consumer<Stream<String>> consumer) {
-    processCommandOutput(dir, consumer, getGradlewCmd(), "dependencies");
+  public void processGradlewRootDependencies(File dir, OutputConsumer consumer) {
+    processCommandOutput(dir, false, consumer, getGradlewCmd(), "dependencies");
   }
 
-  public void processGradlewDependencies(Project project, Consumer<Stream<String>> consumer) {
+  @Override
+  public void processGradlewDependencies(Project project, OutputConsumer consumer) {
     if (project.isRoot()) {
       processGradlewRootDependencies(project.getDir(), consumer);
     } else {
-      processCommandOutput(project.getDir(), consumer, getGradlewCmd(), project.getName() + ":dependencies");
+      processCommandOutput(project.getDir(), false, consumer, getGradlewCmd(), project.getName() + ":dependencies");
     }
   }
 
-  public Map<String, String> getProperties(Project project) {
-    ProcessBuilder processBuilder;
-    if (project.isRoot()) {
-      processBuilder = new ProcessBuilder(getGradlewCmd(), "properties").directory(
-          project.getDir());
-    } else {
-      processBuilder = new ProcessBuilder(getGradlewCmd(), project.getName() + ":properties").directory(
-          project.getDir());
+  @Override
+  public void processGradlewTasks(File dir, List<String> tasks,
+      Consumer<Stream<String>> consumer) {
+    var command = new ArrayList<String>();
+    command.add(getGradlewCmd());
+    command.add("--console=plain");
+    command.add("--continue");
+    command.addAll(tasks);
+    try {
+      processCommandOutput(dir, consumer, command.toArray(String[]::new));
+    } catch (ProcessCancelledException e) {
+      throw e;
+    } catch (ProcessFailedException e) {
+      // with --continue tasks of healthy projects have completed and their output has been passed
+      // to consumer, failed ones are marked in output
+      System.out.println(e.getMessage());
     }
-    Process process;
+  }
+
+  /**
+   * Runs libiModel task injected with init script and passes lines of created model file to
+   * consumer.
+   */
+  @Override
+  public void processGradlewModel(File dir, Consumer<Stream<String>> consumer) {
     try {
-      process = processBuilder.start();
-      try (var bis = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-        return bis.lines()
-            .map(l -> l.split(": ", 2))
-            .filter(t -> t.length == 2)
-            .collect(Collectors.toMap(t -> t[0], t -> t[1], (o1, o2) -> o2));
+      var modelFile = Files.createTempFile("libi-model", ".tsv");
+      try {
+        processCommandOutput(dir, lines -> lines.forEach(line -> {}),
+            getGradlewCmd(), "--console=plain",
+            "--init-script", getInitScript().getAbsolutePath(),
+            "-PlibiModelFile=" + modelFile.toAbsolutePath(),
+            "libiModel");
+        try (var lines = Files.lines(modelFile)) {
+          consumer.accept(lines);
+        }
+      } finally {
+        Files.deleteIfExists(modelFile);
       }
     } catch (IOException e) {
       e.printStackTrace();
     }
-    return Collections.emptyMap();
+  }
+
+  public static Map<String, String> parseProperties(Stream<String> lines) {
+    return lines
+        .map(l -> l.split(": ", 2))
+        .filter(t -> t.length == 2)
+        .collect(Collectors.toMap(t -> t[0], t -> t[1], (o1, o2) -> o2));
+  }
+
+  @Override
+  public Map<String, String> getProperties(Project project) {
+    var properties = new AtomicReference<Map<String, String>>();
+    processCommandOutput(project.getDir(), true,
+        toOutputConsumer(lines -> properties.set(parseProperties(lines))),
+        getGradlewCmd(), project.getTaskPath("properties"));
+    return properties.get();
+  }
+
+  protected synchronized File getInitScript() throws IOException {
+    if (initScript == null) {
+      var file = Files.createTempFile("libi-model", ".gradle");
+      file.toFile().deleteOnExit();
+      try (var is = getClass().getResourceAsStream(INIT_SCRIPT_RESOURCE)) {
+        Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      initScript = file.toFile();
+    }
+    return initScript;
+  }
+
+  private static OutputConsumer toOutputConsumer(Consumer<Stream<String>> consumer) {
+    return reader -> consumer.accept(new BufferedReader(reader).lines());
   }
 
   protected String getGradlewCmd() {
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultDirectedGraph;
+
+/**
+ * Artifacts and dependencies added and removed between two graphs, and cycles created by added
+ * dependencies. Both graphs are sorted by artifact ids and compared with a single merge pass.
+ */
+@Getter
+public class GraphDiff {
+
+  private static final Comparator<Change> CHANGE_ORDER =
+      Comparator.<Change, String>comparing(change -> change.getSource().getId())
+          .thenComparing(change -> change.getTarget().getId());
+
+  private final List<Artifact> addedArtifacts = new ArrayList<>();
+
+  private final List<Artifact> removedArtifacts = new ArrayList<>();
+
+  private final List<Change> addedDependencies = new ArrayList<>();
+
+  private final List<Change> removedDependencies = new ArrayList<>();
+
+  /**
+   * Strongly connected components of new graph containing added dependency between artifacts,
+   * which were not in one component of old graph, so the cycle is new or has grown. Dependencies
+   * added inside of an existing cycle do not make it new.
+   */
+  private final List<List<Artifact>> newCycles = new ArrayList<>();
+
+  public static GraphDiff of(DependencyGraph oldGraph, DependencyGraph newGraph) {
+    var diff = new GraphDiff();
+    var oldArtifacts = sortedArtifacts(oldGraph.getGraph());
+    var newArtifacts = sortedArtifacts(newGraph.getGraph());
+    merge(oldArtifacts, newArtifacts, Comparator.comparing(Artifact::getId),
+        diff.removedArtifacts, diff.addedArtifacts);
+    merge(sortedChanges(oldGraph.getGraph()), sortedChanges(newGraph.getGraph()), CHANGE_ORDER,
+        diff.removedDependencies, diff.addedDependencies);
+    diff.findNewCycles(oldGraph, newGraph);
+    return diff;
+  }
+
+  public boolean isEmpty() {
+    return addedArtifacts.isEmpty() && removedArtifacts.isEmpty()
+        && addedDependencies.isEmpty() && removedDependencies.isEmpty();
+  }
+
+  /**
+   * Returns graph of changes: added and removed artifacts, all artifacts of added and removed
+   * dependencies, and added and removed dependencies.
+   */
+  public DependencyGraph toGraph() {
+    var graph = new DefaultDirectedGraph<Artifact, Dependency>(Dependency.class);
+    addedArtifacts.forEach(graph::addVertex);
+    removedArtifacts.forEach(graph::addVertex);
+    for (var change : addedDependencies) {
+      graph.addVertex(change.getSource());
+      graph.addVertex(change.getTarget());
+      graph.addEdge(change.getSource(), change.getTarget(), change.getDependency());
+    }
+    for (var change : removedDependencies) {
+      graph.addVertex(change.getSource());
+      graph.addVertex(change.getTarget());
+      graph.addEdge(change.getSource(), change.getTarget(), change.getDependency());
+    }
+    return new DependencyGraph(graph);
+  }
+
+  public Set<Dependency> getRemovedDependencySet() {
+    return removedDependencies.stream()
+        .map(Change::getDependency)
+        .collect(Collectors.toCollection(() -> Collections.newSetFromMap(
+            new IdentityHashMap<>())));
+  }
+
+  private void findNewCycles(DependencyGraph oldGraph, DependencyGraph newGraph) {
+    var sccIndex = newGraph.getSccIndex();
+    var snapshot = sccIndex.getSnapshot();
+    var components = new BitSet(sccIndex.getComponentCount());
+    SccIndex oldSccIndex = null;
+    for (var change : addedDependencies) {
+      var c = sccIndex.component(snapshot.ordinal(change.getSource()));
+      if (components.get(c) || !sccIndex.isCycle(c)
+          || c != sccIndex.component(snapshot.ordinal(change.getTarget()))) {
+        continue;
+      }
+      if (oldSccIndex == null) {
+        oldSccIndex = oldGraph.getSccIndex();
+      }
+      var oldSource = oldOrdinal(oldGraph, oldSccIndex, change.getSource());
+      var oldTarget = oldOrdinal(oldGraph, oldSccIndex, change.getTarget());
+      if (oldSource < 0 || oldTarget < 0
+          || oldSccIndex.component(oldSource) != oldSccIndex.component(oldTarget)) {
+        components.set(c);
+      }
+    }
+    components.stream().forEach(c -> {
+      var members = new ArrayList<Artifact>();
+      sccIndex.forEachMember(c, v -> members.add(snapshot.artifact(v)));
+      members.sort(Comparator.comparing(Artifact::getId));
+      newCycles.add(members);
+    });
+  }
+
+  /**
+   * Returns ordinal of artifact with the same id in snapshot of old graph, or -1 if there is none.
+   */
+  private static int oldOrdinal(DependencyGraph oldGraph, SccIndex oldSccIndex,
+      Artifact artifact) {
+    return oldGraph.getRegistry().get(artifact.getId())
+        .map(oldSccIndex.getSnapshot()::ordinal)
+        .orElse(-1);
+  }
+
+  private static List<Artifact> sortedArtifacts(Graph<Artifact, Dependency> graph) {
+    var artifacts = new ArrayList<>(graph.vertexSet());
+    artifacts.sort(Comparator.comparing(Artifact::getId));
+    return artifacts;
+  }
+
+  private static List<Change> sortedChanges(Graph<Artifact, Dependency> graph) {
+    var changes = graph.edgeSet().stream()
+        .map(dependency -> new Change(graph.getEdgeSource(dependency),
+            graph.getEdgeTarget(dependency), dependency))
+        .collect(Collectors.toCollection(ArrayList::new));
+    changes.sort(CHANGE_ORDER);
+    return changes;
+  }
+
+  /**
+   * Merges two sorted lists, collecting elements only in old list as removed and only in new list
+   * as added.
+   */
+  private static <T> void merge(List<T> oldList, List<T> newList, Comparator<T> order,
+      List<T> removed, List<T> added) {
+    int i = 0;
+    int j = 0;
+    while (i < oldList.size() && j < newList.size()) {
+      var cmp = order.compare(oldList.get(i), newList.get(j));
+      if (cmp < 0) {
+        removed.add(oldList.get(i++));
+      } else if (cmp > 0) {
+        added.add(newList.get(j++));
+      } else {
+        i++;
+        j++;
+      }
+    }
+    removed.addAll(oldList.subList(i, oldList.size()));
+    added.addAll(newList.subList(j, newList.size()));
+  }
+
+  /**
+   * Dependency together with its artifacts in the graph it comes from.
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class Change {
+
+    private final Artifact source;
+
+    private final Artifact target;
+
+    private final Dependency dependency;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Optional;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum GraphFormat {
+  /**
+   * JGraphT json format.
+   */
+  JSON(".json"),
+  /**
+   * Libi binary format, see {@link BinaryGraphFile}.
+   */
+  BINARY(".libi");
+
+  private final String extension;
+
+  public static Optional<GraphFormat> of(File file) {
+    return Arrays.stream(values())
+        .filter(format -> file.getName().endsWith(format.getExtension()))
+        .findFirst();
+  }
+
+  public String getName(File file) {
+    var fileName = file.getName();
+    return fileName.substring(0, fileName.length() - extension.length());
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jgrapht.Graph;
+
+/**
+ * History of scans of a graph. Every saved version is kept as delta of added, changed and removed
+ * artifacts and dependencies against previous version, and every checkpoint interval versions the
+ * whole graph is saved as binary checkpoint. Version is read by replaying deltas from the nearest
+ * checkpoint.
+ *
+ * <p>History folder contains 'versions' file with line "version, time, checkpoint" for every
+ * version, 'N.delta' files and 'N.libi' checkpoints. Delta lines are:
+ * <pre>
+ * -dependency  source  target
+ * -artifact    id
+ * +artifact    id  isLibrary
+ * +dependency  source  target  classpaths  type
+ * </pre>
+ * where '+' adds new or replaces changed element.
+ */
+@RequiredArgsConstructor
+public class GraphHistory {
+
+  private final File dir;
+
+  private final int checkpointInterval;
+
+  public List<Version> getVersions() {
+    var versions = new ArrayList<Version>();
+    var file = new File(dir, "versions");
+    if (!file.exists()) {
+      return versions;
+    }
+    try (var br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        var tokens = line.split("\t");
+        if (tokens.length == 3) {
+          versions.add(new Version(Integer.parseInt(tokens[0]), Long.parseLong(tokens[1]),
+              Boolean.parseBoolean(tokens[2])));
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return versions;
+  }
+
+  /**
+   * Saves graph as next version and returns the version.
+   */
+  public int append(DependencyGraph graph) {
+    var versions = getVersions();
+    var version = versions.isEmpty() ? 1 : versions.get(versions.size() - 1).getVersion() + 1;
+    var checkpoint = (version - 1) % Math.max(1, checkpointInterval) == 0;
+    try {
+      Files.createDirectories(dir.toPath());
+      if (version > 1) {
+        writeDelta(read(version - 1).getGraph(), graph.getGraph(), getDeltaFile(version));
+      }
+      if (checkpoint) {
+        BinaryGraphFile.write(graph, getCheckpointFile(version));
+      }
+      try (var writer = Files.newBufferedWriter(new File(dir, "versions").toPath(),
+          StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        writer.write(version + "\t" + System.currentTimeMillis() + "\t" + checkpoint);
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return version;
+  }
+
+  /**
+   * Reads given version of the graph.
+   */
+  public DependencyGraph read(int version) {
+    var versions = getVersions();
+    if (versions.stream().noneMatch(v -> v.getVersion() == version)) {
+      throw new IllegalArgumentException("No version " + version + " in history");
+    }
+    var checkpoint = versions.stream()
+        .filter(v -> v.isCheckpoint() && v.getVersion() <= version)
+        .mapToInt(Version::getVersion)
+        .max()
+        .orElseThrow();
+    try {
+      var graph = BinaryGraphFile.read(getCheckpointFile(checkpoint)).getGraph();
+      for (int v = checkpoint + 1; v <= version; v++) {
+        applyDelta(graph, getDeltaFile(v));
+      }
+      return new DependencyGraph(graph);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns counts of added (or changed) and removed artifacts and dependencies of the version.
+   */
+  public DeltaStats getDeltaStats(int version) {
+    var stats = new DeltaStats();
+    var file = getDeltaFile(version);
+    if (!file.exists()) {
+      return stats;
+    }
+    try (var br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        if (line.startsWith("+artifact")) {
+          stats.addedArtifacts++;
+        } else if (line.startsWith("-artifact")) {
+          stats.removedArtifacts++;
+        } else if (line.startsWith("+dependency")) {
+          stats.addedDependencies++;
+        } else if (line.startsWith("-dependency")) {
+          stats.removedDependencies++;
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return stats;
+  }
+
+  private File getDeltaFile(int version) {
+    return new File(dir, version + ".delta");
+  }
+
+  private File getCheckpointFile(int version) {
+    return new File(dir, version + ".libi");
+  }
+
+  private static void writeDelta(Graph<Artifact, Dependency> previous,
+      Graph<Artifact, Dependency> current, File file) throws IOException {
+    var previousArtifacts = previous.vertexSet().stream()
+        .collect(Collectors.toMap(Artifact::getId, Function.identity()));
+    var currentArtifacts = current.vertexSet().stream()
+        .collect(Collectors.toMap(Artifact::getId, Function.identity()));
+    var previousDependencies = dependencies(previous);
+    var currentDependencies = dependencies(current);
+    var tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+    try (var writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+      for (var key : previousDependencies.keySet()) {
+        if (!currentDependencies.containsKey(key)) {
+          writeLine(writer, "-dependency\t" + key);
+        }
+      }
+      for (var id : previousArtifacts.keySet()) {
+        if (!currentArtifacts.containsKey(id)) {
+          writeLine(writer, "-artifact\t" + id);
+        }
+      }
+      for (var artifact : currentArtifacts.values()) {
+        var previousArtifact = previousArtifacts.get(artifact.getId());
+        if (previousArtifact == null || previousArtifact.isLibrary() != artifact.isLibrary()) {
+          writeLine(writer, "+artifact\t" + artifact.getId() + "\t" + artifact.isLibrary());
+        }
+      }
+      for (var entry : currentDependencies.entrySet()) {
+        var dependency = entry.getValue();
+        var previousDependency = previousDependencies.get(entry.getKey());
+        if (previousDependency == null
+            || previousDependency.getClasspaths() != dependency.getClasspaths()
+            || previousDependency.getType() != dependency.getType()) {
+          writeLine(writer, "+dependency\t" + entry.getKey() + "\t" + dependency.getClasspaths()
+              + "\t" + (dependency.getType() == null ? "" : dependency.getType()));
+        }
+      }
+    } catch (IOException e) {
+      Files.deleteIfExists(tmpFile.toPath());
+      throw e;
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeLine(BufferedWriter writer, String line) throws IOException {
+    writer.write(line);
+    writer.newLine();
+  }
+
+  private static Map<String, Dependency> dependencies(Graph<Artifact, Dependency> graph) {
+    var dependencies = new LinkedHashMap<String, Dependency>();
+    graph.edgeSet().forEach(dependency -> dependencies.put(
+        graph.getEdgeSource(dependency).getId() + "\t" + graph.getEdgeTarget(dependency).getId(),
+        dependency));
+    return dependencies;
+  }
+
+  private static void applyDelta(Graph<Artifact, Dependency> graph, File file)
+      throws IOException {
+    var id2artifact = graph.vertexSet().stream()
+        .collect(Collectors.toMap(Artifact::getId, Function.identity()));
+    try (var br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        var tokens = line.split("\t", -1);
+        switch (tokens[0]) {
+          case "-dependency":
+            graph.removeEdge(id2artifact.get(tokens[1]), id2artifact.get(tokens[2]));
+            break;
+          case "-artifact":
+            graph.removeVertex(id2artifact.remove(tokens[1]));
+            break;
+          case "+artifact":
+            var artifact = id2artifact.computeIfAbsent(tokens[1], Artifact::new);
+            artifact.setLibrary(Boolean.parseBoolean(tokens[2]));
+            graph.addVertex(artifact);
+            break;
+          case "+dependency":
+            var source = id2artifact.get(tokens[1]);
+            var target = id2artifact.get(tokens[2]);
+            var dependency = graph.getEdge(source, target);
+            if (dependency == null) {
+              dependency = new Dependency();
+              graph.addEdge(source, target, dependency);
+            }
+            dependency.setClasspaths(Integer.parseInt(tokens[3]));
+            dependency.setType(Dependency.Type.fromString(tokens[4]).orElse(null));
+            break;
+        }
+      }
+    }
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  public static class Version {
+
+    private final int version;
+
+    private final long time;
+
+    private final boolean checkpoint;
+  }
+
+  @Getter
+  public static class DeltaStats {
+
+    private int addedArtifacts;
+
+    private int removedArtifacts;
+
+    private int addedDependencies;
+
+    private int removedDependencies;
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.BitSet;
+import java.util.Collection;
+import org.jgrapht.Graph;
+
+/**
+ * Immutable snapshot of dependency graph used for queries. Artifacts are identified by ordinals from
+ * {@link ArtifactRegistry} of the graph, forward and reverse adjacency are kept in compressed sparse
+ * row arrays: neighbours of vertex v are targets[offsets[v]] .. targets[offsets[v + 1] - 1].
+ * Classpaths of outgoing dependencies are kept in array parallel to forward adjacency.
+ *
+ * <p>Snapshot of a subgraph shares arrays with snapshot of the whole graph and only masks vertices
+ * which are not in the subgraph. Ordinals of artifacts removed from the graph are masked too.
+ */
+public class GraphSnapshot {
+
+  private final Artifact[] artifacts;
+
+  private final ArtifactRegistry registry;
+
+  private final int[] outOffsets;
+
+  private final int[] outTargets;
+
+  private final byte[] outClasspaths;
+
+  private final int[] inOffsets;
+
+  private final int[] inSources;
+
+  private final int[] outDegrees;
+
+  private final int[] inDegrees;
+
+  /**
+   * Vertices of the (sub)graph or null if every registered artifact is in the graph.
+   */
+  private final BitSet mask;
+
+  private GraphSnapshot(GraphSnapshot snapshot, BitSet mask) {
+    this.artifacts = snapshot.artifacts;
+    this.registry = snapshot.registry;
+    this.outOffsets = snapshot.outOffsets;
+    this.outTargets = snapshot.outTargets;
+    this.outClasspaths = snapshot.outClasspaths;
+    this.inOffsets = snapshot.inOffsets;
+    this.inSources = snapshot.inSources;
+    this.outDegrees = snapshot.outDegrees;
+    this.inDegrees = snapshot.inDegrees;
+    this.mask = mask;
+  }
+
+  private GraphSnapshot(Graph<Artifact, Dependency> graph, ArtifactRegistry registry) {
+    this.registry = registry;
+    graph.vertexSet().forEach(registry::intern);
+    var vertexCount = registry.size();
+    artifacts = new Artifact[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      artifacts[v] = registry.artifact(v);
+    }
+    if (graph.vertexSet().size() < vertexCount) {
+      var graphMask = new BitSet(vertexCount);
+      graph.vertexSet().forEach(artifact -> graphMask.set(registry.ordinal(artifact)));
+      mask = graphMask;
+    } else {
+      mask = null;
+    }
+    var edgeCount = graph.edgeSet().size();
+    var sources = new int[edgeCount];
+    var targets = new int[edgeCount];
+    var classpaths = new byte[edgeCount];
+    outDegrees = new int[vertexCount];
+    inDegrees = new int[vertexCount];
+    var e = 0;
+    for (var dependency : graph.edgeSet()) {
+      sources[e] = registry.ordinal(graph.getEdgeSource(dependency));
+      targets[e] = registry.ordinal(graph.getEdgeTarget(dependency));
+      classpaths[e] = (byte) dependency.getClasspaths();
+      outDegrees[sources[e]]++;
+      inDegrees[targets[e]]++;
+      e++;
+    }
+    outOffsets = offsets(outDegrees);
+    inOffsets = offsets(inDegrees);
+    outTargets = new int[edgeCount];
+    outClasspaths = new byte[edgeCount];
+    inSources = new int[edgeCount];
+    var outFill = outOffsets.clone();
+    var inFill = inOffsets.clone();
+    for (e = 0; e < edgeCount; e++) {
+      outClasspaths[outFill[sources[e]]] = classpaths[e];
+      outTargets[outFill[sources[e]]++] = targets[e];
+      inSources[inFill[targets[e]]++] = sources[e];
+    }
+  }
+
+  private GraphSnapshot(ArtifactRegistry registry, int[] outOffsets, int[] outTargets,
+      byte[] outClasspaths) {
+    this.registry = registry;
+    var vertexCount = registry.size();
+    artifacts = new Artifact[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      artifacts[v] = registry.artifact(v);
+    }
+    mask = null;
+    this.outOffsets = outOffsets;
+    this.outTargets = outTargets;
+    this.outClasspaths = outClasspaths;
+    outDegrees = new int[vertexCount];
+    inDegrees = new int[vertexCount];
+    for (int v = 0; v < vertexCount; v++) {
+      outDegrees[v] = outOffsets[v + 1] - outOffsets[v];
+      for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+        inDegrees[outTargets[i]]++;
+      }
+    }
+    inOffsets = offsets(inDegrees);
+    inSources = new int[outTargets.length];
+    var inFill = inOffsets.clone();
+    for (int v = 0; v < vertexCount; v++) {
+      for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+        inSources[inFill[outTargets[i]]++] = v;
+      }
+    }
+  }
+
+  public static GraphSnapshot of(Graph<Artifact, Dependency> graph, ArtifactRegistry registry) {
+    return new GraphSnapshot(graph, registry);
+  }
+
+  /**
+   * Returns snapshot of graph with every artifact of the registry, given as forward adjacency in
+   * compressed sparse row arrays indexed by registry ordinals. Arrays are not copied.
+   */
+  static GraphSnapshot of(ArtifactRegistry registry, int[] outOffsets, int[] outTargets,
+      byte[] outClasspaths) {
+    return new GraphSnapshot(registry, outOffsets, outTargets, outClasspaths);
+  }
+
+  /**
+   * Returns snapshot of subgraph induced by given artifacts. Artifacts not present in this snapshot
+   * are ignored.
+   */
+  public GraphSnapshot restrict(Collection<Artifact> subgraphArtifacts) {
+    var subgraphMask = new BitSet(artifacts.length);
+    for (var artifact : subgraphArtifacts) {
+      var v = ordinal(artifact);
+      if (v >= 0) {
+        subgraphMask.set(v);
+      }
+    }
+    return new GraphSnapshot(this, subgraphMask);
+  }
+
+  /**
+   * Returns snapshot of subgraph induced by vertices with given ordinals, which must be vertices of
+   * this snapshot. The bitset must not be changed.
+   */
+  public GraphSnapshot restrict(BitSet subgraphMask) {
+    return new GraphSnapshot(this, subgraphMask);
+  }
+
+  /**
+   * Returns number of ordinals, which for restricted snapshot includes vertices outside of the
+   * subgraph.
+   */
+  public int size() {
+    return artifacts.length;
+  }
+
+  public Artifact artifact(int v) {
+    return artifacts[v];
+  }
+
+  /**
+   * Returns ordinal of the artifact or -1 if the artifact is not in the (sub)graph.
+   */
+  public int ordinal(Artifact artifact) {
+    var v = registry.ordinal(artifact);
+    return v >= 0 && v < artifacts.length && contains(v) ? v : -1;
+  }
+
+  public boolean contains(int v) {
+    return mask == null || mask.get(v);
+  }
+
+  public int outDegree(int v) {
+    return mask == null ? outDegrees[v] : count(outTargets, outOffsets[v], outOffsets[v + 1]);
+  }
+
+  public int inDegree(int v) {
+    return mask == null ? inDegrees[v] : count(inSources, inOffsets[v], inOffsets[v + 1]);
+  }
+
+  /**
+   * Passes ordinals of direct dependencies of v to consumer.
+   */
+  public void forEachOutgoing(int v, VertexConsumer consumer) {
+    forEach(outTargets, outOffsets[v], outOffsets[v + 1], consumer);
+  }
+
+  /**
+   * Passes ordinals of direct dependencies of v found on any of classpaths given as bitmask of
+   * {@link DependencyCategory} masks to consumer.
+   */
+  public void forEachOutgoing(int v, int classpaths, VertexConsumer consumer) {
+    for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+      if ((outClasspaths[i] & classpaths) != 0 && contains(outTargets[i])) {
+        consumer.accept(outTargets[i]);
+      }
+    }
+  }
+
+  /**
+   * Passes ordinals of artifacts directly depending on v to consumer.
+   */
+  public void forEachIncoming(int v, VertexConsumer consumer) {
+    forEach(inSources, inOffsets[v], inOffsets[v + 1], consumer);
+  }
+
+  /**
+   * Returns position of first outgoing edge of v, for iteration with {@link #outTarget(int)}.
+   * Targets outside of the (sub)graph are not filtered out.
+   */
+  int outBegin(int v) {
+    return outOffsets[v];
+  }
+
+  int outEnd(int v) {
+    return outOffsets[v + 1];
+  }
+
+  int outTarget(int position) {
+    return outTargets[position];
+  }
+
+  private void forEach(int[] adjacency, int from, int to, VertexConsumer consumer) {
+    for (int i = from; i < to; i++) {
+      if (contains(adjacency[i])) {
+        consumer.accept(adjacency[i]);
+      }
+    }
+  }
+
+  private int count(int[] adjacency, int from, int to) {
+    var count = 0;
+    for (int i = from; i < to; i++) {
+      if (mask.get(adjacency[i])) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int[] offsets(int[] degrees) {
+    var offsets = new int[degrees.length + 1];
+    for (int v = 0; v < degrees.length; v++) {
+      offsets[v + 1] = offsets[v] + degrees[v];
+    }
+    return offsets;
+  }
+
+  @FunctionalInterface
+  public interface VertexConsumer {
+
+    void accept(int v);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Named graph versions kept in memory. When there are more graphs than capacity, the least
+ * recently used one is evicted.
+ */
+public class GraphStore {
+
+  private final Map<String, GraphVersion> graphs = new LinkedHashMap<>(16, 0.75f, true);
+
+  public synchronized Optional<GraphVersion> get(String name) {
+    return Optional.ofNullable(graphs.get(name));
+  }
+
+  public synchronized void put(GraphVersion graphVersion, int capacity) {
+    graphs.put(graphVersion.getName(), graphVersion);
+    var iterator = graphs.values().iterator();
+    while (graphs.size() > Math.max(1, capacity)) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Returns kept graphs from the least to the most recently used.
+   */
+  public synchronized List<GraphVersion> getGraphs() {
+    return new ArrayList<>(graphs.values());
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Level-synchronous multi-source BFS on graph snapshot. Visited vertices and frontier are kept in
+ * bitsets indexed by artifact ordinals.
+ */
+@RequiredArgsConstructor
+public class GraphTraversal {
+
+  public enum Direction {
+    OUTGOING,
+    INCOMING
+  }
+
+  private final GraphSnapshot snapshot;
+
+  /**
+   * Returns sources with vertices reachable from them within maxDepth steps. Vertices meeting stop
+   * condition are neither returned nor expanded, but sources are always expanded.
+   */
+  public BitSet reach(BitSet sources, Direction direction, int maxDepth, IntPredicate stopCondition) {
+    var visited = (BitSet) sources.clone();
+    var frontier = (BitSet) sources.clone();
+    var next = new BitSet(snapshot.size());
+    GraphSnapshot.VertexConsumer visitor = u -> {
+      if (!visited.get(u) && !stopCondition.test(u)) {
+        visited.set(u);
+        next.set(u);
+      }
+    };
+    for (int depth = 0; depth < maxDepth && !frontier.isEmpty(); depth++) {
+      for (int v = frontier.nextSetBit(0); v >= 0; v = frontier.nextSetBit(v + 1)) {
+        if (direction == Direction.OUTGOING) {
+          snapshot.forEachOutgoing(v, visitor);
+        } else {
+          snapshot.forEachIncoming(v, visitor);
+        }
+      }
+      frontier.clear();
+      frontier.or(next);
+      next.clear();
+    }
+    return visited;
+  }
+
+  /**
+   * Returns sources with all vertices reachable from them through dependencies found on any of
+   * classpaths given as bitmask of {@link DependencyCategory} masks.
+   */
+  public BitSet reach(BitSet sources, int classpaths) {
+    var visited = (BitSet) sources.clone();
+    var frontier = (BitSet) sources.clone();
+    var next = new BitSet(snapshot.size());
+    GraphSnapshot.VertexConsumer visitor = u -> {
+      if (!visited.get(u)) {
+        visited.set(u);
+        next.set(u);
+      }
+    };
+    while (!frontier.isEmpty()) {
+      for (int v = frontier.nextSetBit(0); v >= 0; v = frontier.nextSetBit(v + 1)) {
+        snapshot.forEachOutgoing(v, classpaths, visitor);
+      }
+      frontier.clear();
+      frontier.or(next);
+      next.clear();
+    }
+    return visited;
+  }
+
+  /**
+   * Returns sources with all vertices reachable from them, visiting whole strongly connected
+   * components at once. Components must be found for the same snapshot.
+   */
+  public BitSet reach(BitSet sources, Direction direction, SccIndex sccIndex) {
+    var visitedComponents = new BitSet(sccIndex.getComponentCount());
+    var queue = new int[sccIndex.getComponentCount()];
+    var tail = 0;
+    for (int v = sources.nextSetBit(0); v >= 0; v = sources.nextSetBit(v + 1)) {
+      var c = sccIndex.component(v);
+      if (c >= 0 && !visitedComponents.get(c)) {
+        visitedComponents.set(c);
+        queue[tail++] = c;
+      }
+    }
+    var visited = (BitSet) sources.clone();
+    for (int head = 0; head < tail; head++) {
+      var c = queue[head];
+      sccIndex.forEachMember(c, visited::set);
+      if (direction == Direction.OUTGOING) {
+        for (int i = sccIndex.successorBegin(c); i < sccIndex.successorEnd(c); i++) {
+          var d = sccIndex.successor(i);
+          if (!visitedComponents.get(d)) {
+            visitedComponents.set(d);
+            queue[tail++] = d;
+          }
+        }
+      } else {
+        for (int i = sccIndex.predecessorBegin(c); i < sccIndex.predecessorEnd(c); i++) {
+          var d = sccIndex.predecessor(i);
+          if (!visitedComponents.get(d)) {
+            visitedComponents.set(d);
+            queue[tail++] = d;
+          }
+        }
+      }
+    }
+    return visited;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published, frozen dependency graph. Every published graph gets new version number, so the
+ * version can be used as a cache key. Queries should get the working graph version once and use
+ * its graph to the end, even if another graph is published meanwhile.
+ */
+@Getter
+@RequiredArgsConstructor
+public class GraphVersion {
+
+  /**
+   * Name of the graph or null for graph not saved in graphs folder.
+   */
+  private final String name;
+
+  private final long version;
+
+  private final DependencyGraph graph;
+
+  /**
+   * Last modification time of the graph file when the graph was read or written.
+   */
+  private final long fileTimestamp;
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.jgrapht.Graph;
+
+/**
+ * Graph file in JGraphT json format, read and written in a single streaming pass. Artifacts and
+ * dependencies are passed straight to {@link ConcurrentDependencyGraphBuilder} as they are read,
+ * without building json tree or attribute maps. Unknown keys are skipped. The file is written to
+ * temporary file moved in place, so readers never see partially written file.
+ *
+ * <pre>
+ * {"creator":"JGraphT JSON Exporter","version":"1",
+ *  "nodes":[{"id":"group:name","isLibrary":false},...],
+ *  "edges":[{"source":"group:name","target":"group:name","type":"API","classpaths":3},...]}
+ * </pre>
+ *
+ * <p>Graphs saved by older versions keep compile and runtime classpath of every project as comma
+ * separated artifact ids in compileDependencies and runtimeDependencies node keys, and have no
+ * classpaths of dependencies, so they are restored from these ids.
+ */
+public class JsonGraphFile {
+
+  public static void write(DependencyGraph dependencyGraph, File file) throws IOException {
+    var graph = dependencyGraph.getGraph();
+    var dir = file.getAbsoluteFile().getParentFile();
+    Files.createDirectories(dir.toPath());
+    var tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+    try (var writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("{\"creator\":\"JGraphT JSON Exporter\",\"version\":\"1\",\"nodes\":[");
+      var first = true;
+      for (var artifact : graph.vertexSet()) {
+        writer.write(first ? "{\"id\":" : ",{\"id\":");
+        writeString(writer, artifact.getId());
+        writer.write(artifact.isLibrary() ? ",\"isLibrary\":true}" : ",\"isLibrary\":false}");
+        first = false;
+      }
+      writer.write("],\"edges\":[");
+      first = true;
+      for (var dependency : graph.edgeSet()) {
+        writer.write(first ? "{\"source\":" : ",{\"source\":");
+        writeString(writer, graph.getEdgeSource(dependency).getId());
+        writer.write(",\"target\":");
+        writeString(writer, graph.getEdgeTarget(dependency).getId());
+        if (dependency.getType() != null) {
+          writer.write(",\"type\":\"" + dependency.getType() + "\"");
+        }
+        writer.write(",\"classpaths\":" + dependency.getClasspaths() + "}");
+        first = false;
+      }
+      writer.write("]}");
+    } catch (IOException e) {
+      Files.deleteIfExists(tmpFile.toPath());
+      throw e;
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  public static DependencyGraph read(File file) throws IOException {
+    try (var reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      return new GraphReader(new Tokenizer(reader)).read();
+    }
+  }
+
+  private static void writeString(Writer writer, String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      var c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        writer.write('\\');
+        writer.write(c);
+      } else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int) c));
+      } else {
+        writer.write(c);
+      }
+    }
+    writer.write('"');
+  }
+
+  private static class GraphReader {
+
+    private final Tokenizer tokenizer;
+
+    private final ConcurrentDependencyGraphBuilder builder = new ConcurrentDependencyGraphBuilder();
+
+    private final ConcurrentDependencyGraphBuilder.Producer producer = builder.producer();
+
+    private final Map<DependencyCategory, Map<String, String>> legacyClasspaths = new HashMap<>();
+
+    private boolean legacy = true;
+
+    private GraphReader(Tokenizer tokenizer) {
+      this.tokenizer = tokenizer;
+    }
+
+    private DependencyGraph read() throws IOException {
+      tokenizer.expect('{');
+      if (!tokenizer.consume('}')) {
+        do {
+          var key = tokenizer.readString();
+          tokenizer.expect(':');
+          if ("nodes".equals(key)) {
+            readArray(this::readNode);
+          } else if ("edges".equals(key)) {
+            readArray(this::readEdge);
+          } else {
+            tokenizer.skipValue();
+          }
+        } while (tokenizer.consume(','));
+        tokenizer.expect('}');
+      }
+      tokenizer.expectEnd();
+      var graph = builder.build();
+      if (legacy) {
+        legacyClasspaths.forEach((category, classpaths) ->
+            restoreClasspaths(graph.getGraph(), category, classpaths));
+      }
+      return graph;
+    }
+
+    private void readArray(ElementReader elementReader) throws IOException {
+      tokenizer.expect('[');
+      if (tokenizer.consume(']')) {
+        return;
+      }
+      do {
+        elementReader.read();
+      } while (tokenizer.consume(','));
+      tokenizer.expect(']');
+    }
+
+    private void readNode() throws IOException {
+      String id = null;
+      var library = false;
+      String compileDependencies = null;
+      String runtimeDependencies = null;
+      tokenizer.expect('{');
+      if (!tokenizer.consume('}')) {
+        do {
+          var key = tokenizer.readString();
+          tokenizer.expect(':');
+          switch (key) {
+            case "id":
+              id = tokenizer.readScalar();
+              break;
+            case "isLibrary":
+              library = "true".equals(tokenizer.readScalar());
+              break;
+            case "compileDependencies":
+              compileDependencies = tokenizer.readScalar();
+              break;
+            case "runtimeDependencies":
+              runtimeDependencies = tokenizer.readScalar();
+              break;
+            default:
+              tokenizer.skipValue();
+          }
+        } while (tokenizer.consume(','));
+        tokenizer.expect('}');
+      }
+      if (id == null) {
+        throw new IOException("Node without id");
+      }
+      checkId(id);
+      var artifact = producer.addArtifact(id);
+      if (library) {
+        producer.addLibrary(artifact);
+      }
+      addLegacyClasspath(DependencyCategory.COMPILE_CLASSPATH, id, compileDependencies);
+      addLegacyClasspath(DependencyCategory.RUNTIME_CLASSPATH, id, runtimeDependencies);
+    }
+
+    private void readEdge() throws IOException {
+      String source = null;
+      String target = null;
+      var dependency = new Dependency();
+      tokenizer.expect('{');
+      if (!tokenizer.consume('}')) {
+        do {
+          var key = tokenizer.readString();
+          tokenizer.expect(':');
+          switch (key) {
+            case "source":
+              source = tokenizer.readScalar();
+              break;
+            case "target":
+              target = tokenizer.readScalar();
+              break;
+            case "type":
+              Dependency.Type.fromString(tokenizer.readScalar()).ifPresent(dependency::setType);
+              break;
+            case "classpaths":
+              dependency.setClasspaths(tokenizer.readInt());
+              legacy = false;
+              break;
+            default:
+              tokenizer.skipValue();
+          }
+        } while (tokenizer.consume(','));
+        tokenizer.expect('}');
+      }
+      if (source == null || target == null) {
+        throw new IOException("Edge without source or target");
+      }
+      checkId(source);
+      checkId(target);
+      producer.addDependency(producer.addArtifact(source), producer.addArtifact(target),
+          dependency);
+    }
+
+    private void checkId(String id) throws IOException {
+      if (id.indexOf(':') < 0) {
+        throw new IOException("Invalid artifact id '" + id + "'");
+      }
+    }
+
+    private void addLegacyClasspath(DependencyCategory category, String id, String ids) {
+      if (ids != null && !ids.isEmpty()) {
+        legacyClasspaths.computeIfAbsent(category, c -> new HashMap<>()).put(id, ids);
+      }
+    }
+  }
+
+  /**
+   * Adds category to dependencies between artifacts of project classpath (or from the project),
+   * which is the part of the graph gradle printed for the classpath.
+   */
+  private static void restoreClasspaths(Graph<Artifact, Dependency> graph,
+      DependencyCategory category, Map<String, String> classpaths) {
+    var id2artifact = graph.vertexSet().stream()
+        .collect(Collectors.toMap(Artifact::getId, artifact -> artifact));
+    classpaths.forEach((projectId, joinedIds) -> {
+      Set<String> ids = new HashSet<>(Arrays.asList(joinedIds.split(",")));
+      var sources = new ArrayList<Artifact>();
+      sources.add(id2artifact.get(projectId));
+      ids.stream()
+          .filter(id -> !id.equals(projectId))
+          .map(id2artifact::get)
+          .filter(artifact -> artifact != null)
+          .forEach(sources::add);
+      sources.forEach(source -> graph.outgoingEdgesOf(source).stream()
+          .filter(dependency -> ids.contains(graph.getEdgeTarget(dependency).getId()))
+          .forEach(dependency -> dependency.addClasspath(category)));
+    });
+  }
+
+  private interface ElementReader {
+
+    void read() throws IOException;
+  }
+
+  /**
+   * Minimal json tokenizer reading characters one by one from buffered reader. Malformed or
+   * truncated json is rejected with {@link IOException}.
+   */
+  private static class Tokenizer {
+
+    private static final Pattern LITERAL =
+        Pattern.compile("true|false|null|-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private final BufferedReader reader;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private int next = -2;
+
+    private Tokenizer(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * Returns next character after whitespace without consuming it, or -1 at end of file.
+     */
+    private int peek() throws IOException {
+      while (isWhitespace(peekChar())) {
+        next = reader.read();
+      }
+      return next;
+    }
+
+    private int peekChar() throws IOException {
+      if (next == -2) {
+        next = reader.read();
+      }
+      return next;
+    }
+
+    private int read() throws IOException {
+      var c = next == -2 ? reader.read() : next;
+      next = -2;
+      return c;
+    }
+
+    private boolean consume(char c) throws IOException {
+      if (peek() == c) {
+        read();
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(char c) throws IOException {
+      if (!consume(c)) {
+        throw new IOException("Expected '" + c + "' but found " + describe(peek()));
+      }
+    }
+
+    private void expectEnd() throws IOException {
+      if (peek() >= 0) {
+        throw new IOException("Expected end of file but found " + describe(peek()));
+      }
+    }
+
+    private String readString() throws IOException {
+      expect('"');
+      text.setLength(0);
+      int c;
+      while ((c = read()) != '"') {
+        if (c < 0) {
+          throw new IOException("Unterminated string");
+        }
+        if (c == '\\') {
+          c = readEscaped();
+        }
+        text.append((char) c);
+      }
+      return text.toString();
+    }
+
+    private int readEscaped() throws IOException {
+      var c = read();
+      switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+          return c;
+        case 'n':
+          return '\n';
+        case 't':
+          return '\t';
+        case 'r':
+          return '\r';
+        case 'b':
+          return '\b';
+        case 'f':
+          return '\f';
+        case 'u':
+          var code = 0;
+          for (int i = 0; i < 4; i++) {
+            var digit = Character.digit(read(), 16);
+            if (digit < 0) {
+              throw new IOException("Invalid unicode escape");
+            }
+            code = code << 4 | digit;
+          }
+          return code;
+        default:
+          throw new IOException(c < 0 ? "Unterminated string" : "Invalid escape " + describe(c));
+      }
+    }
+
+    /**
+     * Reads string, number or literal and returns it as text.
+     */
+    private String readScalar() throws IOException {
+      if (peek() == '"') {
+        return readString();
+      }
+      text.setLength(0);
+      while (peekChar() >= 0 && ",}]".indexOf(peekChar()) < 0 && !isWhitespace(peekChar())) {
+        text.append((char) read());
+      }
+      var scalar = text.toString();
+      if (!LITERAL.matcher(scalar).matches()) {
+        throw new IOException(scalar.isEmpty() ? "Expected value but found " + describe(peek())
+            : "Invalid value '" + scalar + "'");
+      }
+      return scalar;
+    }
+
+    private int readInt() throws IOException {
+      var scalar = readScalar();
+      try {
+        return Integer.parseInt(scalar);
+      } catch (NumberFormatException e) {
+        throw new IOException("Expected integer but found '" + scalar + "'");
+      }
+    }
+
+    private static boolean isWhitespace(int c) {
+      return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static String describe(int c) {
+      return c < 0 ? "end of file" : "'" + (char) c + "'";
+    }
+
+    private void skipValue() throws IOException {
+      var c = peek();
+      if (c == '{' || c == '[') {
+        var close = c == '{' ? '}' : ']';
+        read();
+        if (consume(close)) {
+          return;
+        }
+        do {
+          if (c == '{') {
+            readString();
+            expect(':');
+          }
+          skipValue();
+        } while (consume(','));
+        expect(close);
+      } else {
+        readScalar();
+      }
+    }
+  }
+}
@@ -30,4 +30,8 @@ public class Project {
   public boolean isRoot() {
     return parent == null;
   }
+
+  public String getTaskPath(String task) {
+    return isRoot() ? ":" + task : name + ":" + task;
+  }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import lombok.Getter;
+
+/**
+ * Answers reachability queries on condensation DAG of the graph. If transitive closure of the
+ * condensation fits in memory limit, it is kept as bitmap, so a query is a few bitmap operations.
+ * Otherwise every component gets interval labels of a few randomized DFS traversals (GRAIL), and
+ * the search from sources visits only components whose intervals may contain some target, so
+ * branches which cannot lead to targets are cut at once.
+ */
+public class ReachabilityIndex {
+
+  private static final int INTERVAL_LABELINGS = 3;
+
+  @Getter
+  private final SccIndex sccIndex;
+
+  /**
+   * Components reachable from every component (including itself) or null if over memory limit.
+   */
+  private final BitSet[] closure;
+
+  /**
+   * Post-order ranks and lowest ranks of descendants for every labeling, or null if closure is
+   * used.
+   */
+  private final int[][] ranks;
+
+  private final int[][] lowRanks;
+
+  private ReachabilityIndex(SccIndex sccIndex, long maxClosureBytes) {
+    this.sccIndex = sccIndex;
+    var componentCount = sccIndex.getComponentCount();
+    if ((long) componentCount * ((componentCount + 63) / 64) * 8 <= maxClosureBytes) {
+      closure = buildClosure();
+      ranks = null;
+      lowRanks = null;
+    } else {
+      closure = null;
+      ranks = new int[INTERVAL_LABELINGS][];
+      lowRanks = new int[INTERVAL_LABELINGS][];
+      var random = new Random(componentCount);
+      for (int i = 0; i < INTERVAL_LABELINGS; i++) {
+        ranks[i] = new int[componentCount];
+        lowRanks[i] = new int[componentCount];
+        label(ranks[i], lowRanks[i], random);
+      }
+    }
+  }
+
+  public static ReachabilityIndex of(SccIndex sccIndex, long maxClosureBytes) {
+    return new ReachabilityIndex(sccIndex, maxClosureBytes);
+  }
+
+  public boolean isClosure() {
+    return closure != null;
+  }
+
+  /**
+   * Returns vertices which are reachable from some source and from which some target is reachable.
+   * Gives the same result as intersection of outgoing flow of sources and incoming flow of
+   * targets.
+   */
+  public BitSet between(BitSet sources, BitSet targets) {
+    var componentCount = sccIndex.getComponentCount();
+    var sourceComponents = toComponents(sources);
+    var targetComponents = toComponents(targets);
+    var forward = new BitSet(componentCount);
+    if (closure != null) {
+      for (int c = sourceComponents.nextSetBit(0); c >= 0; c = sourceComponents.nextSetBit(c + 1)) {
+        forward.or(closure[c]);
+      }
+    } else {
+      // only components which may reach some target are visited, checked once each
+      var targetRanks = getSortedRanks(targetComponents);
+      var checked = new BitSet(componentCount);
+      var queue = new int[componentCount];
+      var tail = 0;
+      for (int c = sourceComponents.nextSetBit(0); c >= 0; c = sourceComponents.nextSetBit(c + 1)) {
+        checked.set(c);
+        if (mayReachAny(c, targetRanks)) {
+          forward.set(c);
+          queue[tail++] = c;
+        }
+      }
+      for (int head = 0; head < tail; head++) {
+        var c = queue[head];
+        for (int i = sccIndex.successorBegin(c); i < sccIndex.successorEnd(c); i++) {
+          var d = sccIndex.successor(i);
+          if (!checked.get(d)) {
+            checked.set(d);
+            if (mayReachAny(d, targetRanks)) {
+              forward.set(d);
+              queue[tail++] = d;
+            }
+          }
+        }
+      }
+    }
+    var result = new BitSet(sccIndex.getSnapshot().size());
+    if (closure != null) {
+      for (int c = forward.nextSetBit(0); c >= 0; c = forward.nextSetBit(c + 1)) {
+        if (closure[c].intersects(targetComponents)) {
+          sccIndex.forEachMember(c, result::set);
+        }
+      }
+    } else {
+      // components on paths to targets are all reachable from sources and may reach targets, so
+      // backward search is limited to forward set
+      var backward = new BitSet(componentCount);
+      var queue = new int[componentCount];
+      var tail = 0;
+      for (int c = targetComponents.nextSetBit(0); c >= 0; c = targetComponents.nextSetBit(c + 1)) {
+        if (forward.get(c)) {
+          backward.set(c);
+          queue[tail++] = c;
+        }
+      }
+      for (int head = 0; head < tail; head++) {
+        var c = queue[head];
+        sccIndex.forEachMember(c, result::set);
+        for (int i = sccIndex.predecessorBegin(c); i < sccIndex.predecessorEnd(c); i++) {
+          var p = sccIndex.predecessor(i);
+          if (forward.get(p) && !backward.get(p)) {
+            backward.set(p);
+            queue[tail++] = p;
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  public long getMemoryUsage() {
+    var usage = sccIndex.getMemoryUsage();
+    if (closure != null) {
+      for (var row : closure) {
+        usage += row.size() / 8;
+      }
+    } else {
+      usage += 4L * INTERVAL_LABELINGS * 2 * sccIndex.getComponentCount();
+    }
+    return usage;
+  }
+
+  private BitSet toComponents(BitSet vertices) {
+    var result = new BitSet(sccIndex.getComponentCount());
+    for (int v = vertices.nextSetBit(0); v >= 0; v = vertices.nextSetBit(v + 1)) {
+      var c = sccIndex.component(v);
+      if (c >= 0) {
+        result.set(c);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Successors have lower numbers, so rows are complete when they are used.
+   */
+  private BitSet[] buildClosure() {
+    var componentCount = sccIndex.getComponentCount();
+    var rows = new BitSet[componentCount];
+    for (int c = 0; c < componentCount; c++) {
+      var row = new BitSet(componentCount);
+      row.set(c);
+      sccIndex.forEachSuccessor(c, d -> row.or(rows[d]));
+      rows[c] = row;
+    }
+    return rows;
+  }
+
+  /**
+   * Labels components with post-order rank of DFS visiting successors in random order, and with
+   * the lowest rank of component descendants. If cu reaches cv, interval of cv is contained in
+   * interval of cu.
+   */
+  private void label(int[] rank, int[] lowRank, Random random) {
+    var componentCount = sccIndex.getComponentCount();
+    var visited = new boolean[componentCount];
+    var stack = new int[componentCount];
+    var children = new int[componentCount][];
+    var childPositions = new int[componentCount];
+    var roots = new int[componentCount];
+    var rootCount = 0;
+    for (int c = componentCount - 1; c >= 0; c--) {
+      if (sccIndex.predecessorBegin(c) == sccIndex.predecessorEnd(c)) {
+        roots[rootCount++] = c;
+      }
+    }
+    shuffle(roots, rootCount, random);
+    var nextRank = 0;
+    for (int r = 0; r < rootCount; r++) {
+      var stackSize = 0;
+      stack[stackSize++] = roots[r];
+      visited[roots[r]] = true;
+      children[roots[r]] = shuffled(successors(roots[r]), random);
+      lowRank[roots[r]] = Integer.MAX_VALUE;
+      while (stackSize > 0) {
+        var c = stack[stackSize - 1];
+        if (childPositions[c] < children[c].length) {
+          var d = children[c][childPositions[c]++];
+          if (!visited[d]) {
+            visited[d] = true;
+            children[d] = shuffled(successors(d), random);
+            lowRank[d] = Integer.MAX_VALUE;
+            stack[stackSize++] = d;
+          } else {
+            lowRank[c] = Math.min(lowRank[c], lowRank[d]);
+          }
+        } else {
+          stackSize--;
+          rank[c] = nextRank++;
+          lowRank[c] = Math.min(lowRank[c], rank[c]);
+          children[c] = null;
+          if (stackSize > 0) {
+            var p = stack[stackSize - 1];
+            lowRank[p] = Math.min(lowRank[p], lowRank[c]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns ranks of components in every labeling, sorted.
+   */
+  private int[][] getSortedRanks(BitSet components) {
+    var sortedRanks = new int[INTERVAL_LABELINGS][];
+    for (int i = 0; i < INTERVAL_LABELINGS; i++) {
+      var rank = ranks[i];
+      sortedRanks[i] = components.stream().map(c -> rank[c]).sorted().toArray();
+    }
+    return sortedRanks;
+  }
+
+  /**
+   * Returns false if component c cannot reach any of components with given sorted ranks. If c
+   * reaches d, rank of d lies in interval of c in every labeling, so c is rejected if some of its
+   * intervals contains no rank.
+   */
+  private boolean mayReachAny(int c, int[][] sortedRanks) {
+    for (int i = 0; i < INTERVAL_LABELINGS; i++) {
+      var values = sortedRanks[i];
+      var pos = Arrays.binarySearch(values, lowRanks[i][c]);
+      if (pos < 0) {
+        pos = -pos - 1;
+      }
+      if (pos == values.length || values[pos] > ranks[i][c]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int[] successors(int c) {
+    var result = new int[sccIndex.successorEnd(c) - sccIndex.successorBegin(c)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = sccIndex.successor(sccIndex.successorBegin(c) + i);
+    }
+    return result;
+  }
+
+  private static int[] shuffled(int[] values, Random random) {
+    shuffle(values, values.length, random);
+    return values;
+  }
+
+  private static void shuffle(int[] values, int length, Random random) {
+    for (int i = length - 1; i > 0; i--) {
+      var j = random.nextInt(i + 1);
+      var value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+  }
+}
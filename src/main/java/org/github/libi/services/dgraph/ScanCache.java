@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * On-disk cache of project dependencies found by scanning. Entry key is made of build fingerprint
+ * (which covers build files and gradle wrapper version) and project name, so the same project
+ * scanned for different graphs is scanned only once.
+ */
+@RequiredArgsConstructor
+public class ScanCache {
+
+  /**
+   * Version of entry format, part of the key, so entries in older format are not read.
+   */
+  private static final String FORMAT_VERSION = "2";
+
+  private final File dir;
+
+  public String getKey(String buildFingerprint, Project project) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      digest.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(buildFingerprint.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(project.getName().getBytes(StandardCharsets.UTF_8));
+      return BuildFingerprint.toHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public boolean contains(String key) {
+    return getFile(key).exists();
+  }
+
+  /**
+   * Reads cached dependencies of the project into graph. Returns false if there is no entry for
+   * the key or project artifact is not known.
+   */
+  public boolean read(String key, Artifact projectArtifact, DependencyGraph graph) {
+    var file = getFile(key);
+    if (projectArtifact == null || !file.exists()) {
+      return false;
+    }
+    var projectGraph = new DependencyGraph();
+    var id2artifact = new HashMap<String, Artifact>();
+    id2artifact.put(projectArtifact.getId(), projectArtifact);
+    try (var br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        var tokens = line.split("\t");
+        switch (tokens[0]) {
+          case "artifact":
+            projectGraph.addArtifact(id2artifact.computeIfAbsent(tokens[1], Artifact::new));
+            break;
+          case "dependency":
+            projectGraph.addDependency(
+                id2artifact.computeIfAbsent(tokens[1], Artifact::new),
+                id2artifact.computeIfAbsent(tokens[2], Artifact::new))
+                .setClasspaths(Integer.parseInt(tokens[3]));
+            break;
+        }
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    graph.merge(projectGraph);
+    return true;
+  }
+
+  /**
+   * Writes dependencies of the project to temporary file moved in place, so truncated entry is
+   * never read.
+   */
+  public void write(String key, DependencyGraph projectGraph) {
+    var file = getFile(key);
+    try {
+      Files.createDirectories(dir.toPath());
+      var tmpFile = File.createTempFile(key, ".tmp", dir);
+      try (var writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+        var graph = projectGraph.getGraph();
+        for (var artifact : graph.vertexSet()) {
+          writer.write("artifact\t" + artifact.getId() + "\n");
+        }
+        for (var dependency : graph.edgeSet()) {
+          writer.write("dependency\t" + graph.getEdgeSource(dependency).getId()
+              + "\t" + graph.getEdgeTarget(dependency).getId()
+              + "\t" + dependency.getClasspaths() + "\n");
+        }
+      } catch (IOException e) {
+        Files.deleteIfExists(tmpFile.toPath());
+        throw e;
+      }
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private File getFile(String key) {
+    return new File(dir, key + ".tsv");
+  }
+}
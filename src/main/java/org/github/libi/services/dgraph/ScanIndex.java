@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps fingerprint of every scanned build together with artifacts and dependencies found by the
+ * scan, so that graph can be updated only for builds that changed.
+ */
+public class ScanIndex {
+
+  /**
+   * Fingerprint of build which was scanned only partially. It never matches fingerprint of the
+   * build, so the build is scanned again.
+   */
+  public static final String INCOMPLETE = "incomplete";
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  public Optional<Entry> get(File dir) {
+    return Optional.ofNullable(entries.get(dir.getAbsolutePath()));
+  }
+
+  public void put(Entry entry) {
+    entries.put(entry.getDir(), entry);
+  }
+
+  public Collection<Entry> getEntries() {
+    return entries.values();
+  }
+
+  /**
+   * Removes from the graph artifacts and dependencies found only by builds which are in previous
+   * index, but not in this one.
+   */
+  public void removeStaleBuilds(ScanIndex previous, DependencyGraph dependencyGraph) {
+    var keptArtifacts = new HashSet<String>();
+    var keptDependencies = new HashSet<String>();
+    entries.values().forEach(entry -> {
+      keptArtifacts.addAll(entry.getArtifacts());
+      keptDependencies.addAll(entry.getDependencies());
+    });
+    var graph = dependencyGraph.getGraph();
+    var id2artifact = graph.vertexSet().stream()
+        .collect(Collectors.toMap(Artifact::getId, Function.identity(), (a1, a2) -> a1));
+    previous.getEntries().stream()
+        .filter(entry -> !entries.containsKey(entry.getDir()))
+        .forEach(entry -> {
+          entry.getDependencies().stream()
+              .filter(dependency -> !keptDependencies.contains(dependency))
+              .map(dependency -> dependency.split("\t"))
+              .forEach(ids -> {
+                var source = id2artifact.get(ids[0]);
+                var target = id2artifact.get(ids[1]);
+                if (source != null && target != null) {
+                  graph.removeEdge(source, target);
+                }
+              });
+          entry.getArtifacts().stream()
+              .filter(artifact -> !keptArtifacts.contains(artifact))
+              .map(id2artifact::get)
+              .filter(Objects::nonNull)
+              .forEach(graph::removeVertex);
+        });
+    dependencyGraph.invalidateSnapshot();
+  }
+
+  public static ScanIndex read(File file) {
+    var index = new ScanIndex();
+    try (var br = new BufferedReader(new FileReader(file))) {
+      String line;
+      Entry entry = null;
+      while ((line = br.readLine()) != null) {
+        var tokens = line.split("\t", 2);
+        if (tokens.length < 2) {
+          continue;
+        }
+        switch (tokens[0]) {
+          case "build":
+            var buildTokens = tokens[1].split("\t");
+            entry = new Entry(buildTokens[0], buildTokens[1]);
+            index.put(entry);
+            break;
+          case "artifact":
+            entry.getArtifacts().add(tokens[1]);
+            break;
+          case "dependency":
+            entry.getDependencies().add(tokens[1]);
+            break;
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return index;
+  }
+
+  public void write(File file) {
+    try {
+      Files.createDirectories(file.getParentFile().toPath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    try (var writer = new PrintWriter(new FileWriter(file))) {
+      entries.values().forEach(entry -> {
+        writer.println("build\t" + entry.getDir() + "\t" + entry.getFingerprint());
+        entry.getArtifacts().forEach(id -> writer.println("artifact\t" + id));
+        entry.getDependencies().forEach(ids -> writer.println("dependency\t" + ids));
+      });
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Getter
+  @RequiredArgsConstructor
+  public static class Entry {
+
+    private final String dir;
+
+    private final String fingerprint;
+
+    private final Set<String> artifacts = new LinkedHashSet<>();
+
+    private final Set<String> dependencies = new LinkedHashSet<>();
+
+    public static Entry of(File dir, String fingerprint, DependencyGraph buildGraph) {
+      var entry = new Entry(dir.getAbsolutePath(), fingerprint);
+      var graph = buildGraph.getGraph();
+      graph.vertexSet().forEach(artifact -> entry.getArtifacts().add(artifact.getId()));
+      graph.edgeSet().forEach(dependency -> entry.getDependencies().add(
+          graph.getEdgeSource(dependency).getId() + "\t" + graph.getEdgeTarget(dependency).getId()));
+      return entry;
+    }
+  }
+}
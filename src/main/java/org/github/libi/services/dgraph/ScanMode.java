@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+public enum ScanMode {
+  /**
+   * Parse output of gradle projects, properties and dependencies tasks.
+   */
+  TASKS,
+  /**
+   * Inject init script writing dependency model of the whole build in a single gradle run.
+   */
+  INIT_SCRIPT,
+  /**
+   * Read settings, build files and version catalogs without running gradle. Gives approximate
+   * graph with declared direct dependencies only.
+   */
+  STATIC
+}
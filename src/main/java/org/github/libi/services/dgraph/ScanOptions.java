@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ScanOptions {
+
+  @Builder.Default
+  private final ScanMode mode = ScanMode.TASKS;
+
+  @Builder.Default
+  private final int threads = 1;
+
+  @Builder.Default
+  private final boolean batched = false;
+
+  @Builder.Default
+  private final boolean incremental = false;
+
+  @Builder.Default
+  private final boolean cache = false;
+
+  /**
+   * Append scanned graph as new version to graph history.
+   */
+  @Builder.Default
+  private final boolean history = false;
+
+  /**
+   * Max depth of build directories below scan roots.
+   */
+  @Builder.Default
+  private final int depth = 3;
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Strongly connected components of graph snapshot found with iterative Tarjan algorithm, together
+ * with condensation DAG. Components are numbered in order of completion, so every edge of the
+ * condensation goes from component with higher number to component with lower number, and
+ * descending numbers give topological order.
+ */
+public class SccIndex {
+
+  @Getter
+  private final GraphSnapshot snapshot;
+
+  /**
+   * Component of every ordinal or -1 for ordinals outside of the (sub)graph.
+   */
+  private final int[] components;
+
+  @Getter
+  private final int componentCount;
+
+  private final int[] memberOffsets;
+
+  private final int[] members;
+
+  private final int[] successorOffsets;
+
+  private final int[] successors;
+
+  private final int[] predecessorOffsets;
+
+  private final int[] predecessors;
+
+  private SccIndex(GraphSnapshot snapshot) {
+    this.snapshot = snapshot;
+    var size = snapshot.size();
+    components = new int[size];
+    Arrays.fill(components, -1);
+    componentCount = findComponents();
+    var componentSizes = new int[componentCount];
+    for (int v = 0; v < size; v++) {
+      if (components[v] >= 0) {
+        componentSizes[components[v]]++;
+      }
+    }
+    memberOffsets = offsets(componentSizes);
+    members = new int[memberOffsets[componentCount]];
+    var fill = Arrays.copyOf(memberOffsets, componentCount);
+    for (int v = 0; v < size; v++) {
+      if (components[v] >= 0) {
+        members[fill[components[v]]++] = v;
+      }
+    }
+    var condensationEdges = findCondensationEdges();
+    successorOffsets = condensationEdges[0];
+    successors = condensationEdges[1];
+    predecessorOffsets = condensationEdges[2];
+    predecessors = condensationEdges[3];
+  }
+
+  public static SccIndex of(GraphSnapshot snapshot) {
+    return new SccIndex(snapshot);
+  }
+
+  /**
+   * Returns component of vertex with given ordinal or -1 if the vertex is not in the graph.
+   */
+  public int component(int v) {
+    return components[v];
+  }
+
+  public int size(int component) {
+    return memberOffsets[component + 1] - memberOffsets[component];
+  }
+
+  /**
+   * Returns true if component has more than one vertex or a vertex depending on itself.
+   */
+  public boolean isCycle(int component) {
+    if (size(component) > 1) {
+      return true;
+    }
+    var v = members[memberOffsets[component]];
+    for (int i = snapshot.outBegin(v); i < snapshot.outEnd(v); i++) {
+      if (snapshot.outTarget(i) == v) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void forEachMember(int component, GraphSnapshot.VertexConsumer consumer) {
+    for (int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+      consumer.accept(members[i]);
+    }
+  }
+
+  /**
+   * Passes components directly reachable from component to consumer.
+   */
+  public void forEachSuccessor(int component, GraphSnapshot.VertexConsumer consumer) {
+    for (int i = successorOffsets[component]; i < successorOffsets[component + 1]; i++) {
+      consumer.accept(successors[i]);
+    }
+  }
+
+  /**
+   * Passes components from which component is directly reachable to consumer.
+   */
+  public void forEachPredecessor(int component, GraphSnapshot.VertexConsumer consumer) {
+    for (int i = predecessorOffsets[component]; i < predecessorOffsets[component + 1]; i++) {
+      consumer.accept(predecessors[i]);
+    }
+  }
+
+  int successorBegin(int component) {
+    return successorOffsets[component];
+  }
+
+  int successorEnd(int component) {
+    return successorOffsets[component + 1];
+  }
+
+  int successor(int position) {
+    return successors[position];
+  }
+
+  int predecessorBegin(int component) {
+    return predecessorOffsets[component];
+  }
+
+  int predecessorEnd(int component) {
+    return predecessorOffsets[component + 1];
+  }
+
+  int predecessor(int position) {
+    return predecessors[position];
+  }
+
+  public long getMemoryUsage() {
+    return 4L * (components.length + memberOffsets.length + members.length
+        + successorOffsets.length + successors.length
+        + predecessorOffsets.length + predecessors.length);
+  }
+
+  private int findComponents() {
+    var size = snapshot.size();
+    var index = new int[size];
+    var low = new int[size];
+    var edgePositions = new int[size];
+    var onStack = new boolean[size];
+    var stack = new int[size];
+    var callStack = new int[size];
+    Arrays.fill(index, -1);
+    int counter = 0;
+    int stackSize = 0;
+    int componentCounter = 0;
+    for (int root = 0; root < size; root++) {
+      if (index[root] >= 0 || !snapshot.contains(root)) {
+        continue;
+      }
+      int callStackSize = 0;
+      index[root] = low[root] = counter++;
+      edgePositions[root] = snapshot.outBegin(root);
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      callStack[callStackSize++] = root;
+      while (callStackSize > 0) {
+        var v = callStack[callStackSize - 1];
+        if (edgePositions[v] < snapshot.outEnd(v)) {
+          var w = snapshot.outTarget(edgePositions[v]++);
+          if (!snapshot.contains(w)) {
+            continue;
+          }
+          if (index[w] < 0) {
+            index[w] = low[w] = counter++;
+            edgePositions[w] = snapshot.outBegin(w);
+            stack[stackSize++] = w;
+            onStack[w] = true;
+            callStack[callStackSize++] = w;
+          } else if (onStack[w]) {
+            low[v] = Math.min(low[v], index[w]);
+          }
+        } else {
+          callStackSize--;
+          if (callStackSize > 0) {
+            var u = callStack[callStackSize - 1];
+            low[u] = Math.min(low[u], low[v]);
+          }
+          if (low[v] == index[v]) {
+            int w;
+            do {
+              w = stack[--stackSize];
+              onStack[w] = false;
+              components[w] = componentCounter;
+            } while (w != v);
+            componentCounter++;
+          }
+        }
+      }
+    }
+    return componentCounter;
+  }
+
+  /**
+   * Returns offsets and targets of condensation edges in both directions, without duplicates and
+   * loops.
+   */
+  private int[][] findCondensationEdges() {
+    var lastSource = new int[componentCount];
+    Arrays.fill(lastSource, -1);
+    var outDegrees = new int[componentCount];
+    var inDegrees = new int[componentCount];
+    var targets = new int[16];
+    var sources = new int[16];
+    int edgeCount = 0;
+    for (int c = 0; c < componentCount; c++) {
+      for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+        var v = members[m];
+        for (int i = snapshot.outBegin(v); i < snapshot.outEnd(v); i++) {
+          var w = snapshot.outTarget(i);
+          if (!snapshot.contains(w)) {
+            continue;
+          }
+          var d = components[w];
+          if (d != c && lastSource[d] != c) {
+            lastSource[d] = c;
+            if (edgeCount == targets.length) {
+              targets = Arrays.copyOf(targets, edgeCount * 2);
+              sources = Arrays.copyOf(sources, edgeCount * 2);
+            }
+            sources[edgeCount] = c;
+            targets[edgeCount] = d;
+            edgeCount++;
+            outDegrees[c]++;
+            inDegrees[d]++;
+          }
+        }
+      }
+    }
+    // edges are already grouped by source component
+    var outOffsets = offsets(outDegrees);
+    var inOffsets = offsets(inDegrees);
+    var inSources = new int[edgeCount];
+    var fill = Arrays.copyOf(inOffsets, componentCount);
+    for (int e = 0; e < edgeCount; e++) {
+      inSources[fill[targets[e]]++] = sources[e];
+    }
+    return new int[][]{outOffsets, Arrays.copyOf(targets, edgeCount), inOffsets, inSources};
+  }
+
+  private static int[] offsets(int[] degrees) {
+    var offsets = new int[degrees.length + 1];
+    for (int v = 0; v < degrees.length; v++) {
+      offsets[v + 1] = offsets[v] + degrees[v];
+    }
+    return offsets;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import org.jgrapht.Graph;
+
+/**
+ * Exports dependency graph to SQLite database file with tables:
+ * <pre>
+ * artifact   (id, artifact_id, group_id, name, is_library)
+ * dependency (source, target, type, classpaths, compile, runtime)
+ * reachability_start (id)
+ * </pre>
+ * and views of transitive dependencies (source, target) of artifacts inserted to
+ * reachability_start, computed with recursive queries seeded from these artifacts only:
+ * reachability, compile_reachability and runtime_reachability, as well as artifact_reachability
+ * with artifact ids instead of row ids. The views are empty until start artifacts are inserted,
+ * so no query walks closure of the whole graph. The database is written to temporary file with
+ * batched inserts in a single transaction, and indexes are created after inserts.
+ */
+public class SqliteGraphExporter {
+
+  private static final int BATCH_SIZE = 10_000;
+
+  private static final String[] SCHEMA = {
+      "CREATE TABLE artifact (id INTEGER PRIMARY KEY, artifact_id TEXT NOT NULL,"
+          + " group_id TEXT NOT NULL, name TEXT NOT NULL, is_library INTEGER NOT NULL)",
+      "CREATE TABLE dependency (source INTEGER NOT NULL REFERENCES artifact (id),"
+          + " target INTEGER NOT NULL REFERENCES artifact (id), type TEXT,"
+          + " classpaths INTEGER NOT NULL, compile INTEGER NOT NULL, runtime INTEGER NOT NULL,"
+          + " PRIMARY KEY (source, target)) WITHOUT ROWID",
+      "CREATE TABLE reachability_start (id INTEGER PRIMARY KEY REFERENCES artifact (id))",
+      reachabilityView("reachability", null),
+      reachabilityView("compile_reachability", "compile"),
+      reachabilityView("runtime_reachability", "runtime"),
+      "CREATE VIEW artifact_reachability (source_id, target_id) AS"
+          + " SELECT s.artifact_id, t.artifact_id FROM reachability r"
+          + " JOIN artifact s ON s.id = r.source JOIN artifact t ON t.id = r.target"
+  };
+
+  private static final String[] INDEXES = {
+      "CREATE UNIQUE INDEX artifact_artifact_id ON artifact (artifact_id)",
+      "CREATE INDEX artifact_group_id ON artifact (group_id)",
+      "CREATE INDEX artifact_name ON artifact (name)",
+      // dependency primary key (source, target) is the index on source
+      "CREATE INDEX dependency_target ON dependency (target, source)"
+  };
+
+  public static void export(DependencyGraph dependencyGraph, File file) throws IOException {
+    var graph = dependencyGraph.getGraph();
+    var dir = file.getAbsoluteFile().getParentFile();
+    Files.createDirectories(dir.toPath());
+    var tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      writeDatabase(graph, tmpFile);
+      Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    } finally {
+      Files.deleteIfExists(tmpFile.toPath());
+    }
+  }
+
+  private static void writeDatabase(Graph<Artifact, Dependency> graph, File file)
+      throws SQLException {
+    try (var connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+      try (var statement = connection.createStatement()) {
+        statement.execute("PRAGMA journal_mode = OFF");
+        statement.execute("PRAGMA synchronous = OFF");
+      }
+      connection.setAutoCommit(false);
+      execute(connection, SCHEMA);
+      var artifact2id = new HashMap<Artifact, Integer>();
+      try (var insert = connection.prepareStatement(
+          "INSERT INTO artifact (id, artifact_id, group_id, name, is_library)"
+              + " VALUES (?, ?, ?, ?, ?)")) {
+        for (var artifact : graph.vertexSet()) {
+          var id = artifact2id.size() + 1;
+          artifact2id.put(artifact, id);
+          insert.setInt(1, id);
+          insert.setString(2, artifact.getId());
+          insert.setString(3, artifact.getGroup());
+          insert.setString(4, artifact.getName());
+          insert.setInt(5, artifact.isLibrary() ? 1 : 0);
+          insert.addBatch();
+          if (id % BATCH_SIZE == 0) {
+            insert.executeBatch();
+          }
+        }
+        insert.executeBatch();
+      }
+      try (var insert = connection.prepareStatement(
+          "INSERT INTO dependency (source, target, type, classpaths, compile, runtime)"
+              + " VALUES (?, ?, ?, ?, ?, ?)")) {
+        var count = 0;
+        for (var dependency : graph.edgeSet()) {
+          insert.setInt(1, artifact2id.get(graph.getEdgeSource(dependency)));
+          insert.setInt(2, artifact2id.get(graph.getEdgeTarget(dependency)));
+          if (dependency.getType() != null) {
+            insert.setString(3, dependency.getType().toString());
+          } else {
+            insert.setNull(3, Types.VARCHAR);
+          }
+          insert.setInt(4, dependency.getClasspaths());
+          insert.setInt(5, dependency.isOnClasspath(DependencyCategory.COMPILE_CLASSPATH) ? 1 : 0);
+          insert.setInt(6, dependency.isOnClasspath(DependencyCategory.RUNTIME_CLASSPATH) ? 1 : 0);
+          insert.addBatch();
+          if (++count % BATCH_SIZE == 0) {
+            insert.executeBatch();
+          }
+        }
+        insert.executeBatch();
+      }
+      execute(connection, INDEXES);
+      connection.commit();
+    }
+  }
+
+  /**
+   * Returns view of artifacts reachable from start artifacts, through dependencies on given
+   * classpath flag column, or through all dependencies if it is null.
+   */
+  private static String reachabilityView(String name, String classpath) {
+    var condition = classpath == null ? "" : " AND d." + classpath + " = 1";
+    return "CREATE VIEW " + name + " (source, target) AS"
+        + " WITH RECURSIVE reach (source, target) AS ("
+        + " SELECT d.source, d.target FROM dependency d"
+        + " WHERE d.source IN (SELECT id FROM reachability_start)" + condition
+        + " UNION SELECT reach.source, d.target FROM reach"
+        + " JOIN dependency d ON d.source = reach.target" + condition + ")"
+        + " SELECT source, target FROM reach";
+  }
+
+  private static void execute(Connection connection, String[] statements) throws SQLException {
+    try (var statement = connection.createStatement()) {
+      for (var sql : statements) {
+        statement.execute(sql);
+      }
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Creates approximate dependency graph of gradle build without running gradle. Projects are read
+ * from settings file includes, and declared dependencies (module notations, project references and
+ * version catalog aliases) are read directly from build files. Only direct dependencies are found.
+ * Projects without declared group get gradle default group: empty for root project, and made of
+ * root project name and parent project path for other projects.
+ */
+@RequiredArgsConstructor
+public class StaticBuildScanner {
+
+  private static final Set<String> COMPILE_CONFIGURATIONS = Set.of(
+      "api", "implementation", "compileOnly", "compileOnlyApi", "compile");
+
+  private static final Set<String> RUNTIME_CONFIGURATIONS = Set.of(
+      "api", "implementation", "runtimeOnly", "compile", "runtime");
+
+  private static final Pattern QUOTED = Pattern.compile("['\"]([^'\"]+)['\"]");
+
+  private static final Pattern INCLUDE = Pattern.compile("^\\s*include\\b\\s*\\(?(.*)$");
+
+  private static final Pattern ROOT_PROJECT_NAME = Pattern.compile(
+      "rootProject\\.name\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+  private static final Pattern PROJECT_DIR = Pattern.compile(
+      "project\\(\\s*['\"]([^'\"]+)['\"]\\s*\\)\\.projectDir\\s*=\\s*(?:file|new File)\\(\\s*['\"]([^'\"]+)['\"]");
+
+  private static final Pattern GROUP = Pattern.compile(
+      "^\\s*(?:project\\.)?group\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+  private static final Pattern DEPENDENCY = Pattern.compile(
+      "^\\s*(\\w+)\\s*\\(?\\s*(?:platform\\s*\\(\\s*|enforcedPlatform\\s*\\(\\s*)?(.*)$");
+
+  private static final Pattern PROJECT_NOTATION = Pattern.compile(
+      "^project\\s*\\(\\s*(?:path\\s*[:=]\\s*)?['\"]([^'\"]+)['\"]");
+
+  private static final Pattern MODULE_NOTATION = Pattern.compile(
+      "^['\"]([^'\":\\s]+):([^'\":\\s]+)[^'\"]*['\"]");
+
+  private static final Pattern MAP_NOTATION = Pattern.compile(
+      "group\\s*:\\s*['\"]([^'\"]+)['\"]\\s*,\\s*name\\s*:\\s*['\"]([^'\"]+)['\"]");
+
+  private static final Pattern CATALOG_NOTATION = Pattern.compile(
+      "^(\\w+)\\.([\\w.]+)");
+
+  private static final Pattern TOML_SECTION = Pattern.compile("^\\s*\\[(\\w+)]\\s*$");
+
+  private static final Pattern TOML_ENTRY = Pattern.compile("^\\s*([\\w.-]+)\\s*=\\s*(.*)$");
+
+  private static final Pattern TOML_MODULE = Pattern.compile("module\\s*=\\s*\"([^\":]+):([^\"]+)\"");
+
+  private static final Pattern TOML_GROUP_NAME = Pattern.compile(
+      "group\\s*=\\s*\"([^\"]+)\"\\s*,\\s*name\\s*=\\s*\"([^\"]+)\"");
+
+  private final DependencyGraph graph;
+
+  private final Map<String, String> catalogLibraries = new HashMap<>();
+
+  private final Map<String, List<String>> catalogBundles = new HashMap<>();
+
+  private final Map<String, Artifact> projectPath2Artifact = new HashMap<>();
+
+  private String rootProjectName;
+
+  public void scan(File rootDir) {
+    readVersionCatalog(new File(rootDir, "gradle/libs.versions.toml"));
+    var projectDirs = readSettings(rootDir);
+    var defaultGroup = readGroup(rootDir, null);
+    projectDirs.forEach((path, dir) -> {
+      var group = Optional.ofNullable(readGroup(dir, defaultGroup))
+          .orElseGet(() -> getDefaultGroup(path));
+      var name = ":".equals(path) ? rootProjectName : path.substring(path.lastIndexOf(':') + 1);
+      var artifact = graph.addArtifact(new Artifact(group, name));
+      projectPath2Artifact.put(path, artifact);
+    });
+    projectDirs.forEach((path, dir) -> {
+      var artifact = projectPath2Artifact.get(path);
+      if (artifact != null) {
+        readDependencies(dir, artifact);
+      }
+    });
+  }
+
+  private Map<String, File> readSettings(File rootDir) {
+    var projectDirs = new LinkedHashMap<String, File>();
+    projectDirs.put(":", rootDir);
+    rootProjectName = rootDir.getName();
+    var customDirs = new HashMap<String, String>();
+    for (var line : readStatements(findBuildFile(rootDir, "settings"))) {
+      var includeMatcher = INCLUDE.matcher(line);
+      if (includeMatcher.find()) {
+        var quoted = QUOTED.matcher(includeMatcher.group(1));
+        while (quoted.find()) {
+          var path = quoted.group(1).startsWith(":") ? quoted.group(1) : ":" + quoted.group(1);
+          projectDirs.put(path, new File(rootDir, path.substring(1).replace(':', '/')));
+        }
+      }
+      find(ROOT_PROJECT_NAME, line).ifPresent(m -> rootProjectName = m.group(1));
+      find(PROJECT_DIR, line).ifPresent(m -> customDirs.put(m.group(1), m.group(2)));
+    }
+    customDirs.forEach((path, dir) -> {
+      if (projectDirs.containsKey(path)) {
+        projectDirs.put(path, new File(rootDir, dir));
+      }
+    });
+    return projectDirs;
+  }
+
+  private String readGroup(File dir, String defaultGroup) {
+    for (var line : readStatements(findBuildFile(dir, "build"))) {
+      var matcher = find(GROUP, line);
+      if (matcher.isPresent()) {
+        return matcher.get().group(1);
+      }
+    }
+    if (defaultGroup == null) {
+      var properties = new File(dir, "gradle.properties");
+      for (var line : readStatements(properties)) {
+        var tokens = line.split("=", 2);
+        if (tokens.length == 2 && "group".equals(tokens[0].trim())) {
+          return tokens[1].trim();
+        }
+      }
+    }
+    return defaultGroup;
+  }
+
+  /**
+   * Returns group gradle gives to project without group: empty group for root project, root
+   * project name for its children, and root project name followed by parent project path for other
+   * projects, so project ':a:b' of root project 'root' is in group 'root.a'.
+   */
+  private String getDefaultGroup(String path) {
+    if (":".equals(path)) {
+      return "";
+    }
+    var parentEnd = path.lastIndexOf(':');
+    return parentEnd == 0
+        ? rootProjectName : rootProjectName + path.substring(0, parentEnd).replace(':', '.');
+  }
+
+  private void readDependencies(File dir, Artifact projectArtifact) {
+    for (var line : readStatements(findBuildFile(dir, "build"))) {
+      var matcher = DEPENDENCY.matcher(line);
+      if (!matcher.find()) {
+        continue;
+      }
+      var configuration = matcher.group(1);
+      var compile = COMPILE_CONFIGURATIONS.contains(configuration);
+      var runtime = RUNTIME_CONFIGURATIONS.contains(configuration);
+      if (!compile && !runtime) {
+        continue;
+      }
+      for (var dependency : parseNotation(matcher.group(2).trim())) {
+        var edge = graph.addDependency(projectArtifact, dependency);
+        if (compile) {
+          edge.addClasspath(DependencyCategory.COMPILE_CLASSPATH);
+        }
+        if (runtime) {
+          edge.addClasspath(DependencyCategory.RUNTIME_CLASSPATH);
+        }
+      }
+    }
+  }
+
+  private List<Artifact> parseNotation(String notation) {
+    var projectMatcher = PROJECT_NOTATION.matcher(notation);
+    if (projectMatcher.find()) {
+      return Optional.ofNullable(projectPath2Artifact.get(projectMatcher.group(1)))
+          .map(List::of)
+          .orElse(Collections.emptyList());
+    }
+    var moduleMatcher = MODULE_NOTATION.matcher(notation);
+    if (moduleMatcher.find()) {
+      return List.of(new Artifact(moduleMatcher.group(1), moduleMatcher.group(2)));
+    }
+    var mapMatcher = MAP_NOTATION.matcher(notation);
+    if (mapMatcher.find()) {
+      return List.of(new Artifact(mapMatcher.group(1), mapMatcher.group(2)));
+    }
+    var catalogMatcher = CATALOG_NOTATION.matcher(notation);
+    if (catalogMatcher.find()) {
+      var accessor = catalogMatcher.group(2);
+      var artifacts = new ArrayList<Artifact>();
+      if (accessor.startsWith("bundles.")) {
+        catalogBundles.getOrDefault(accessor.substring("bundles.".length()), List.of())
+            .stream()
+            .map(catalogLibraries::get)
+            .filter(Objects::nonNull)
+            .map(Artifact::new)
+            .forEach(artifacts::add);
+      } else {
+        Optional.ofNullable(catalogLibraries.get(accessor))
+            .map(Artifact::new)
+            .ifPresent(artifacts::add);
+      }
+      return artifacts;
+    }
+    return Collections.emptyList();
+  }
+
+  private void readVersionCatalog(File file) {
+    String section = null;
+    for (var line : readStatements(file)) {
+      var sectionMatcher = TOML_SECTION.matcher(line);
+      if (sectionMatcher.find()) {
+        section = sectionMatcher.group(1);
+        continue;
+      }
+      var entryMatcher = TOML_ENTRY.matcher(line);
+      if (!entryMatcher.find()) {
+        continue;
+      }
+      var alias = toAccessor(entryMatcher.group(1));
+      var value = entryMatcher.group(2);
+      if ("libraries".equals(section)) {
+        parseCatalogLibrary(value).ifPresent(id -> catalogLibraries.put(alias, id));
+      } else if ("bundles".equals(section)) {
+        var members = new ArrayList<String>();
+        var quoted = QUOTED.matcher(value);
+        while (quoted.find()) {
+          members.add(toAccessor(quoted.group(1)));
+        }
+        catalogBundles.put(alias, members);
+      }
+    }
+  }
+
+  private static Optional<String> parseCatalogLibrary(String value) {
+    var module = TOML_MODULE.matcher(value);
+    if (module.find()) {
+      return Optional.of(module.group(1) + ":" + module.group(2));
+    }
+    var groupName = TOML_GROUP_NAME.matcher(value);
+    if (groupName.find()) {
+      return Optional.of(groupName.group(1) + ":" + groupName.group(2));
+    }
+    var quoted = QUOTED.matcher(value);
+    if (quoted.find()) {
+      var tokens = quoted.group(1).split(":");
+      if (tokens.length >= 2) {
+        return Optional.of(tokens[0] + ":" + tokens[1]);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static String toAccessor(String alias) {
+    return alias.replace('-', '.').replace('_', '.');
+  }
+
+  private static Optional<Matcher> find(Pattern pattern, String line) {
+    var matcher = pattern.matcher(line);
+    return matcher.find() ? Optional.of(matcher) : Optional.empty();
+  }
+
+  private static File findBuildFile(File dir, String name) {
+    var groovyFile = new File(dir, name + ".gradle");
+    return groovyFile.exists() ? groovyFile : new File(dir, name + ".gradle.kts");
+  }
+
+  /**
+   * Reads file lines without comments. Lines ending with comma or open bracket are joined with
+   * following lines, so statements split into many lines are returned as one.
+   */
+  private static List<String> readStatements(File file) {
+    if (!file.exists()) {
+      return Collections.emptyList();
+    }
+    var statements = new ArrayList<String>();
+    try {
+      var statement = new StringBuilder();
+      for (var line : Files.readAllLines(file.toPath())) {
+        line = stripComment(line);
+        var trimmed = line.trim();
+        if (trimmed.startsWith("#")) {
+          continue;
+        }
+        statement.append(statement.length() > 0 ? " " + trimmed : line);
+        if (!trimmed.endsWith(",") && !trimmed.endsWith("(") && !trimmed.endsWith("[")) {
+          statements.add(statement.toString());
+          statement.setLength(0);
+        }
+      }
+      if (statement.length() > 0) {
+        statements.add(statement.toString());
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return statements;
+  }
+
+  /**
+   * Removes line comment starting with '//' outside of string literals, so urls in strings are kept.
+   */
+  private static String stripComment(String line) {
+    char quote = 0;
+    for (int i = 0; i < line.length(); i++) {
+      var c = line.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '\'' || c == '"') {
+        quote = c;
+      } else if (c == '/' && i + 1 < line.length() && line.charAt(i + 1) == '/') {
+        return line.substring(0, i);
+      }
+    }
+    return line;
+  }
+}
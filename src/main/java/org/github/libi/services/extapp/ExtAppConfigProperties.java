@@ -7,6 +7,7 @@
 
 package org.github.libi.services.extapp;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -20,4 +21,14 @@ public class ExtAppConfigProperties {
   private String imageViewer;
 
   private String gradlew;
+
+  private String gradleBackend;
+
+  private Duration gradlewTimeout = Duration.ofMinutes(30);
+
+  private Duration dotTimeout = Duration.ofMinutes(5);
+
+  private int processRetries = 2;
+
+  private Duration processRetryBackoff = Duration.ofSeconds(5);
 }
@@ -8,19 +8,27 @@
 package org.github.libi.services.extapp;
 
 import java.io.File;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class GraphVizService {
 
+  private final ExtAppConfigProperties extAppConfigProperties;
+
+  private final ProcessRunner processRunner;
+
   public boolean dotGenPng(File file) {
-    ProcessBuilder processBuilder = new ProcessBuilder("dot", "-Tpng", "-O",
-        file.getPath());
     try {
-      processBuilder.start().waitFor();
-    } catch (Exception e) {
+      processRunner.run(null, extAppConfigProperties.getDotTimeout(),
+          extAppConfigProperties.getProcessRetries(),
+          extAppConfigProperties.getProcessRetryBackoff(),
+          List.of("dot", "-Tpng", "-O", file.getPath()));
+    } catch (ProcessFailedException e) {
       log.error("Cannot generate png file " + file.getPath(), e);
       return false;
     }
@@ -10,6 +10,7 @@ package org.github.libi.services.extapp;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -21,14 +22,13 @@ public class ImageViewerService {
 
   private final ExtAppConfigProperties extAppConfigProperties;
 
+  private final ProcessRunner processRunner;
+
   public void openInViewer(File imageFile) {
-    var processBuilder = new ProcessBuilder(
-        extAppConfigProperties.getImageViewer(),
-        imageFile.getPath());
     try {
       Files.createDirectories(imageFile.getParentFile().toPath());
-      processBuilder.start();
-    } catch (IOException e) {
+      processRunner.start(List.of(extAppConfigProperties.getImageViewer(), imageFile.getPath()));
+    } catch (IOException | ProcessFailedException e) {
       log.error("Cannot view file " + imageFile, e);
       e.printStackTrace();
     }
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.extapp;
+
+public class ProcessFailedException extends RuntimeException {
+
+  public ProcessFailedException(String message) {
+    super(message);
+  }
+
+  public ProcessFailedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.extapp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs external commands. Standard output is streamed to consumer while the process runs and
+ * standard error is drained by separate thread, so a process never blocks on full pipe. Process
+ * tree is killed on timeout or when calling thread is interrupted. Commands which exited with
+ * non-zero code can be retried with exponential backoff, but timeouts and commands which could not
+ * be started are never retried.
+ */
+@Slf4j
+@Service
+public class ProcessRunner {
+
+  private static final int ERROR_TAIL_LINES = 20;
+
+  private final ExecutorService streamExecutor = Executors.newCachedThreadPool(runnable -> {
+    var thread = new Thread(runnable, "libi-process-stream");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Set<Process> running = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Runs command ignoring its standard output.
+   *
+   * @see #run(File, Duration, int, Duration, List, OutputConsumer)
+   */
+  public void run(File dir, Duration timeout, int retries, Duration backoff,
+      List<String> command) {
+    run(dir, timeout, retries, backoff, command, reader -> {
+    });
+  }
+
+  /**
+   * Runs command and passes its standard output to consumer while the process runs. Command which
+   * exited with non-zero code is run again up to retries times, and consumer is then called again
+   * with output of the new run, so callers retrying commands must not keep state of failed runs.
+   *
+   * @throws ProcessFailedException if the command could not be started, timed out, its output
+   *                                could not be read, or it exited with non-zero code in all
+   *                                attempts, or if it was cancelled
+   */
+  public void run(File dir, Duration timeout, int retries, Duration backoff,
+      List<String> command, OutputConsumer consumer) {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        runOnce(dir, timeout, command, consumer);
+        return;
+      } catch (ProcessExitException e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        log.warn("Retrying {} in {}: {}", command, dir, e.getMessage());
+        sleep(backoff.multipliedBy(1L << attempt));
+      }
+    }
+  }
+
+  /**
+   * Starts command without waiting for it. Output of the process is drained and ignored.
+   */
+  public void start(List<String> command) {
+    try {
+      var process = new ProcessBuilder(command).start();
+      streamExecutor.submit(() -> drain(process.getInputStream(), 0));
+      streamExecutor.submit(() -> drain(process.getErrorStream(), 0));
+    } catch (IOException e) {
+      throw new ProcessFailedException("Cannot start " + command, e);
+    }
+  }
+
+  /**
+   * Kills all running processes together with their descendants.
+   */
+  @PreDestroy
+  public void cancelAll() {
+    running.forEach(this::kill);
+  }
+
+  private void runOnce(File dir, Duration timeout, List<String> command,
+      OutputConsumer consumer) {
+    Process process;
+    try {
+      process = new ProcessBuilder(command).directory(dir).start();
+    } catch (IOException e) {
+      throw new ProcessFailedException("Cannot start " + command + " in " + dir, e);
+    }
+    running.add(process);
+    var deadline = System.nanoTime() + timeout.toNanos();
+    Future<?> stdout = streamExecutor.submit(() -> {
+      try (var reader = new InputStreamReader(process.getInputStream())) {
+        consumer.accept(reader);
+        reader.transferTo(Writer.nullWriter());
+      }
+      return null;
+    });
+    Future<List<String>> stderr = streamExecutor.submit(
+        () -> drain(process.getErrorStream(), ERROR_TAIL_LINES));
+    try {
+      stdout.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+      if (!process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        throw new TimeoutException();
+      }
+      if (process.exitValue() != 0) {
+        throw new ProcessExitException(
+            command + " exited with code " + process.exitValue() + " in " + dir + ":\n"
+                + String.join("\n", getQuietly(stderr)), process.exitValue());
+      }
+    } catch (TimeoutException e) {
+      kill(process);
+      throw new ProcessFailedException(command + " timed out after " + timeout + " in " + dir);
+    } catch (InterruptedException e) {
+      kill(process);
+      stdout.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new ProcessCancelledException(command + " cancelled in " + dir);
+    } catch (ExecutionException e) {
+      kill(process);
+      throw new ProcessFailedException("Cannot read output of " + command + " in " + dir,
+          e.getCause());
+    } finally {
+      running.remove(process);
+    }
+  }
+
+  private void kill(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  /**
+   * Reads all lines from the stream, keeping at most maxLines last lines.
+   */
+  private static List<String> drain(InputStream is, int maxLines) throws IOException {
+    var lines = new ArrayDeque<String>();
+    try (var br = new BufferedReader(new InputStreamReader(is))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        if (maxLines > 0) {
+          if (lines.size() == maxLines) {
+            lines.pollFirst();
+          }
+          lines.offerLast(line);
+        }
+      }
+    }
+    return new ArrayList<>(lines);
+  }
+
+  private static List<String> getQuietly(Future<List<String>> future) {
+    try {
+      return future.get(1, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      return List.of();
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCancelledException("Cancelled while waiting for retry");
+    }
+  }
+
+  /**
+   * Reads standard output of a process while it runs. Output not read by the consumer is skipped.
+   */
+  @FunctionalInterface
+  public interface OutputConsumer {
+
+    void accept(Reader output) throws IOException;
+  }
+
+  public static class ProcessCancelledException extends ProcessFailedException {
+
+    public ProcessCancelledException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Process exited with non-zero code, which is the only failure that can be retried.
+   */
+  @Getter
+  public static class ProcessExitException extends ProcessFailedException {
+
+    private final int exitCode;
+
+    public ProcessExitException(String message, int exitCode) {
+      super(message);
+      this.exitCode = exitCode;
+    }
+  }
+}
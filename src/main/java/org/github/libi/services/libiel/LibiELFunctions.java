@@ -7,14 +7,11 @@
 
 package org.github.libi.services.libiel;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import org.github.libi.services.dgraph.Artifact;
-import org.github.libi.services.dgraph.Dependency;
-import org.jgrapht.graph.AsSubgraph;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+import org.github.libi.services.dgraph.DependencyCategory;
+import org.github.libi.services.dgraph.GraphSnapshot;
+import org.github.libi.services.dgraph.GraphTraversal;
 import org.springframework.context.annotation.Lazy;
 
 @Lazy(false)
@@ -25,101 +22,110 @@ public class LibiELFunctions {
   public VerticeSet count(LibiELVisitorCtx ctx, String name, VerticeSet vs) {
     System.out.println(
         "Artifacts count for " + name
-            + " is " + vs.getArtifacts()
-            .size());
+            + " is " + vs.size());
     return vs;
   }
 
   @LibiELFunction("find dependency graf roots (Artifact with no incoming dependencies)")
   public VerticeSet roots(LibiELVisitorCtx ctx) {
-    return new VerticeSet(
-        ctx.getVerticeSet().getArtifacts().stream()
-            .filter(a -> ctx.getGraph().getGraph().inDegreeOf(a) == 0)
-            .collect(Collectors.toSet()));
+    var snapshot = ctx.getGraph().getSnapshot();
+    return filterBySnapshot(ctx, ctx.getVerticeSet(), v -> snapshot.inDegree(v) == 0);
   }
 
   @LibiELFunction("find dependency graf roots (Artifact with no incoming dependencies)")
   public VerticeSet roots(LibiELVisitorCtx ctx, VerticeSet vs) {
-    var artifacts = vs.getArtifacts();
-    var subgraph = new AsSubgraph<>(ctx.getGraph().getGraph(), new HashSet<>(artifacts));
-    return new VerticeSet(
-        artifacts.stream()
-            .filter(a -> subgraph.inDegreeOf(a) == 0)
-            .collect(Collectors.toSet()));
+    var snapshot = restrict(ctx, vs);
+    return filterBySnapshot(ctx, vs, v -> snapshot.inDegree(v) == 0);
   }
 
   @LibiELFunction("find dependency graf leaves (Artifact with no outgoing dependencies)")
   public VerticeSet leaves(LibiELVisitorCtx ctx) {
-    return new VerticeSet(
-        ctx.getVerticeSet().getArtifacts().stream()
-            .filter(a -> ctx.getGraph().getGraph().outDegreeOf(a) == 0)
-            .collect(Collectors.toSet()));
+    var snapshot = ctx.getGraph().getSnapshot();
+    return filterBySnapshot(ctx, ctx.getVerticeSet(), v -> snapshot.outDegree(v) == 0);
   }
 
   @LibiELFunction("find dependency graf leaves (Artifact with no outgoing dependencies)")
   public VerticeSet leaves(LibiELVisitorCtx ctx, VerticeSet vs) {
-    var artifacts = vs.getArtifacts();
-    var subgraph = new AsSubgraph<>(ctx.getGraph().getGraph(), new HashSet<>(artifacts));
-    return new VerticeSet(
-        artifacts.stream()
-            .filter(a -> subgraph.outDegreeOf(a) == 0)
-            .collect(Collectors.toSet()));
+    var snapshot = restrict(ctx, vs);
+    return filterBySnapshot(ctx, vs, v -> snapshot.outDegree(v) == 0);
   }
 
   @LibiELFunction("find dependency graf isolated vertices (Artifact with no dependencies)")
   public VerticeSet isolated(LibiELVisitorCtx ctx) {
-    return new VerticeSet(
-        ctx.getVerticeSet().getArtifacts().stream()
-            .filter(a -> ctx.getGraph().getGraph().degreeOf(a) == 0)
-            .collect(Collectors.toSet()));
+    var snapshot = ctx.getGraph().getSnapshot();
+    return filterBySnapshot(ctx, ctx.getVerticeSet(),
+        v -> snapshot.inDegree(v) == 0 && snapshot.outDegree(v) == 0);
   }
 
-  @LibiELFunction("find dependency graf cycles")
+  @LibiELFunction("find dependency graf cycles (artifacts of strongly connected components)")
   public VerticeSet cycles(LibiELVisitorCtx ctx) {
-    var subgraph = new AsSubgraph<>(
-        ctx.getGraph().getGraph());
-    var cArtifacts = subgraph.vertexSet().stream()
-        .filter(a ->
-            subgraph.outDegreeOf(a) == 0 || subgraph.inDegreeOf(a) == 0)
-        .collect(Collectors.toCollection(HashSet::new));
-    while (!cArtifacts.isEmpty()) {
-      var cArtifact = cArtifacts.iterator().next();
-      var nb = subgraph.edgesOf(cArtifact).stream()
-          .map(subgraph::getEdgeSource)
-          .filter(Predicate.not(cArtifact::equals))
-          .collect(Collectors.toSet());
-      subgraph.removeVertex(cArtifact);
-      cArtifacts.remove(cArtifact);
-      nb.stream()
-          .filter(a -> subgraph.outDegreeOf(a) == 0 || subgraph.inDegreeOf(a) == 0)
-          .forEach(cArtifacts::add);
+    var sccIndex = ctx.getGraph().getSccIndex();
+    var ordinals = new BitSet(sccIndex.getSnapshot().size());
+    for (int c = 0; c < sccIndex.getComponentCount(); c++) {
+      if (sccIndex.isCycle(c)) {
+        sccIndex.forEachMember(c, ordinals::set);
+      }
     }
-    return new VerticeSet(subgraph.vertexSet());
+    return new VerticeSet(ctx.getGraph().getRegistry(), ordinals);
+  }
+
+  @LibiELFunction("find strongly connected components of artifacts (artifacts in cycle with them)")
+  public VerticeSet component(LibiELVisitorCtx ctx, VerticeSet vs) {
+    var graph = ctx.getGraph();
+    var sccIndex = graph.getSccIndex();
+    var components = new BitSet(sccIndex.getComponentCount());
+    VerticeSetOps.inSnapshot(graph, vs.getOrdinals(graph.getRegistry())).stream()
+        .map(sccIndex::component)
+        .forEach(components::set);
+    var ordinals = new BitSet(sccIndex.getSnapshot().size());
+    components.stream().forEach(c -> sccIndex.forEachMember(c, ordinals::set));
+    return new VerticeSet(graph.getRegistry(), ordinals);
   }
 
   @LibiELFunction("get compile dependency")
   public VerticeSet compile(LibiELVisitorCtx ctx, VerticeSet vs) {
-    var allArtifacts = new HashSet<>(vs.getArtifacts());
-    vs.getArtifacts().stream()
-        .map(Artifact::getCompileDependencies)
-        .flatMap(Collection::stream)
-        .map(ctx.getVerticeSet()::getById)
-        .flatMap(Optional::stream)
-        .forEach(allArtifacts::add);
-
-    return new VerticeSet(allArtifacts);
+    return classpath(ctx, vs, DependencyCategory.COMPILE_CLASSPATH);
   }
 
   @LibiELFunction("get runtime dependency")
   public VerticeSet runtime(LibiELVisitorCtx ctx, VerticeSet vs) {
-    var allArtifacts = new HashSet<>(vs.getArtifacts());
-    vs.getArtifacts().stream()
-        .map(Artifact::getRuntimeDependencies)
-        .flatMap(Collection::stream)
-        .map(ctx.getVerticeSet()::getById)
-        .flatMap(Optional::stream)
-        .forEach(allArtifacts::add);
-
-    return new VerticeSet(allArtifacts);
+    return classpath(ctx, vs, DependencyCategory.RUNTIME_CLASSPATH);
+  }
+
+  /**
+   * Returns artifacts of vs with all artifacts reachable from them through dependencies found on
+   * the classpath.
+   */
+  private static VerticeSet classpath(LibiELVisitorCtx ctx, VerticeSet vs,
+      DependencyCategory category) {
+    var graph = ctx.getGraph();
+    var ordinals = vs.getOrdinals(graph.getRegistry());
+    var result = (BitSet) ordinals.clone();
+    result.or(new GraphTraversal(graph.getSnapshot())
+        .reach(VerticeSetOps.inSnapshot(graph, ordinals), category.getMask()));
+    return new VerticeSet(graph.getRegistry(), result);
+  }
+
+  /**
+   * Returns snapshot of subgraph of the context graph induced by artifacts of vs.
+   */
+  private static GraphSnapshot restrict(LibiELVisitorCtx ctx, VerticeSet vs) {
+    var graph = ctx.getGraph();
+    return graph.getSnapshot()
+        .restrict(VerticeSetOps.inSnapshot(graph, vs.getOrdinals(graph.getRegistry())));
+  }
+
+  /**
+   * Returns artifacts of vs present in the graph of the context, which ordinals meet the condition.
+   */
+  private static VerticeSet filterBySnapshot(LibiELVisitorCtx ctx, VerticeSet vs,
+      IntPredicate condition) {
+    var graph = ctx.getGraph();
+    var ordinals = VerticeSetOps.inSnapshot(graph, vs.getOrdinals(graph.getRegistry()));
+    var result = new BitSet(ordinals.length());
+    ordinals.stream()
+        .filter(condition)
+        .forEach(result::set);
+    return new VerticeSet(graph.getRegistry(), result);
   }
 }
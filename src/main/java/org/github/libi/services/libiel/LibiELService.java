@@ -40,12 +40,18 @@ public class LibiELService {
     readFunctions(new File("functions"));
   }
 
+  public VerticeSet filter(DependencyGraph dependencyGraph, DependencyGraph mainGraph,
+      String expression) {
+    return filter(libiELEnv, dependencyGraph, mainGraph, expression);
+  }
+
   public VerticeSet filter(DependencyGraph dependencyGraph, String expression) {
-    return filter(libiELEnv, dependencyGraph, dependencyGraphService.getWorkingGraph(), expression);
+    return filter(dependencyGraph, dependencyGraphService.getWorkingGraph(), expression);
   }
 
   public VerticeSet filter(String expression) {
-    return filter(dependencyGraphService.getWorkingGraph(), expression);
+    var graph = dependencyGraphService.getWorkingGraph();
+    return filter(graph, graph, expression);
   }
 
   public void addFunction(String name, String expr) {
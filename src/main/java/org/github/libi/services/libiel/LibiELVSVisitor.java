@@ -64,7 +64,7 @@ public class LibiELVSVisitor extends LibiELBaseVisitor<VerticeSet> {
       var visitor = new LibiELVSVisitor(visitorCtx.createChild(fGraph));
       fGraph = fGraph.subgraph(new HashSet<>(visitor.visitVsAll(chCtx).getArtifacts()));
     }
-    return new VerticeSet(fGraph.getGraph().vertexSet());
+    return new VerticeSet(fGraph);
   }
 
   @Override
@@ -115,14 +115,10 @@ public class LibiELVSVisitor extends LibiELBaseVisitor<VerticeSet> {
                   VerticeSetOps.directOut(visitorCtx.getGraph(), vertices2)));
           break;
         case LibiELParser.RLongArrow:
-          vertices = VerticeSetOps.intersect(
-              VerticeSetOps.flowOut(visitorCtx.getGraph(), vertices),
-              VerticeSetOps.flowIn(visitorCtx.getGraph(), vertices2));
+          vertices = VerticeSetOps.between(visitorCtx.getGraph(), vertices, vertices2);
           break;
         case LibiELParser.LLongArrow:
-          vertices = VerticeSetOps.intersect(
-              VerticeSetOps.flowIn(visitorCtx.getGraph(), vertices),
-              VerticeSetOps.flowOut(visitorCtx.getGraph(), vertices2));
+          vertices = VerticeSetOps.between(visitorCtx.getGraph(), vertices2, vertices);
           break;
       }
     }
@@ -25,14 +25,14 @@ public class LibiELVisitorCtx {
     this.env = env;
     this.graph = graph;
     this.mainGraph = graph;
-    verticeSet = new VerticeSet(graph.getGraph().vertexSet());
+    verticeSet = new VerticeSet(graph);
   }
 
   public LibiELVisitorCtx(LibiELEnv env, DependencyGraph graph, DependencyGraph mainGraph) {
     this.env = env;
     this.graph = graph;
     this.mainGraph = mainGraph;
-    verticeSet = new VerticeSet(graph.getGraph().vertexSet());
+    verticeSet = new VerticeSet(graph);
   }
 
   public LibiELVisitorCtx createChild(DependencyGraph graph) {
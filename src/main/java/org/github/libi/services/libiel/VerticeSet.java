@@ -7,52 +7,99 @@
 
 package org.github.libi.services.libiel;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import lombok.Getter;
-import lombok.Setter;
 import org.github.libi.services.dgraph.Artifact;
+import org.github.libi.services.dgraph.ArtifactRegistry;
+import org.github.libi.services.dgraph.DependencyGraph;
 
+/**
+ * Set of artifacts kept as bitset of their ordinals in {@link ArtifactRegistry} of a graph, which
+ * are also ordinals of graph snapshot. Graph and its subgraphs share the registry, so sets of one
+ * expression are combined with bitset operations. Artifacts of sets with other registry are
+ * registered by id before they are combined.
+ */
 @Getter
-@Setter
 public class VerticeSet {
 
-  private final Map<String, Artifact> id2artifact;
+  private final ArtifactRegistry registry;
 
-  private final Map<String, List<Artifact>> groupedArtifacts;
+  /**
+   * Ordinals of artifacts in the set. The bitset must not be changed.
+   */
+  private final BitSet ordinals;
 
-  public VerticeSet(Collection<Artifact> artifacts) {
-    this.id2artifact = artifacts.stream()
-        .collect(Collectors.toMap(
-            Artifact::getId,
-            Function.identity(),
-            (a1, a2) -> a1));
-    this.groupedArtifacts = artifacts.stream()
-        .collect(Collectors.groupingBy(Artifact::getGroup));
+  public VerticeSet(ArtifactRegistry registry, BitSet ordinals) {
+    this.registry = registry;
+    this.ordinals = ordinals;
   }
 
-  public VerticeSet(Artifact artifact) {
-    this(Collections.singleton(artifact));
+  public VerticeSet(ArtifactRegistry registry, Collection<Artifact> artifacts) {
+    this(registry, new BitSet());
+    artifacts.forEach(artifact -> ordinals.set(registry.ordinal(registry.intern(artifact))));
   }
 
-  public VerticeSet() {
-    this(Collections.emptyList());
+  /**
+   * Returns set of all artifacts of the graph.
+   */
+  public VerticeSet(DependencyGraph graph) {
+    this(graph.getRegistry(), new BitSet());
+    var snapshot = graph.getSnapshot();
+    for (int v = 0; v < snapshot.size(); v++) {
+      if (snapshot.contains(v)) {
+        ordinals.set(v);
+      }
+    }
   }
 
   public Optional<Artifact> getById(String id) {
-    return Optional.ofNullable(id2artifact.get(id));
+    return registry.get(id).filter(this::contains);
+  }
+
+  public List<Artifact> getArtifacts() {
+    return Collections.unmodifiableList(ordinals.stream()
+        .mapToObj(registry::artifact)
+        .collect(Collectors.toList()));
   }
 
-  public Collection<Artifact> getArtifacts() {
-    return id2artifact.values();
+  public int size() {
+    return ordinals.cardinality();
   }
 
   public boolean contains(Artifact a) {
-    return id2artifact.containsKey(a.getId());
+    var v = registry.ordinal(a);
+    return v >= 0 && ordinals.get(v);
+  }
+
+  /**
+   * Returns ordinals of artifacts of the set in given registry, registering them if the registry
+   * is not the registry of the set.
+   */
+  public BitSet getOrdinals(ArtifactRegistry otherRegistry) {
+    if (otherRegistry == registry) {
+      return ordinals;
+    }
+    var otherOrdinals = new BitSet();
+    ordinals.stream()
+        .map(v -> otherRegistry.ordinal(otherRegistry.intern(registry.artifact(v))))
+        .forEach(otherOrdinals::set);
+    return otherOrdinals;
+  }
+
+  /**
+   * Returns subset of artifacts meeting the condition.
+   */
+  public VerticeSet filter(Predicate<Artifact> condition) {
+    var result = new BitSet();
+    ordinals.stream()
+        .filter(v -> condition.test(registry.artifact(v)))
+        .forEach(result::set);
+    return new VerticeSet(registry, result);
   }
 }
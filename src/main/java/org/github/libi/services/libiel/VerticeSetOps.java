@@ -7,82 +7,116 @@
 
 package org.github.libi.services.libiel;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import org.github.libi.services.dgraph.DependencyFlow;
 import org.github.libi.services.dgraph.DependencyGraph;
+import org.github.libi.services.dgraph.GraphTraversal.Direction;
 
+/**
+ * Operations on vertice sets. Sets are combined as bitsets of artifact ordinals in registry of the
+ * first set, and flows are computed on bitsets of the graph snapshot.
+ */
 public class VerticeSetOps {
 
   public static VerticeSet id(VerticeSet vs, String artifactId) {
-    return new VerticeSet(
-        vs.getById(artifactId)
-            .stream()
-            .collect(Collectors.toList()));
+    var result = new BitSet();
+    vs.getById(artifactId).ifPresent(a -> result.set(vs.getRegistry().ordinal(a)));
+    return new VerticeSet(vs.getRegistry(), result);
   }
 
   public static VerticeSet gid(VerticeSet vs, String groupId) {
-    return new VerticeSet(
-        vs.getGroupedArtifacts()
-            .getOrDefault(groupId, Collections.emptyList()));
+    return vs.filter(a -> a.getGroup().equals(groupId));
   }
 
   public static VerticeSet re(VerticeSet vs, String re) {
-    var result = new VerticeSet();
     var pattern = Pattern.compile(re);
-    return new VerticeSet(
-        vs.getId2artifact().values().stream()
-            .filter(a -> pattern.matcher(a.getId()).find())
-            .collect(Collectors.toList()));
+    return vs.filter(a -> pattern.matcher(a.getId()).find());
   }
 
   public static VerticeSet gre(VerticeSet vs, String re) {
-    var result = new VerticeSet();
     var pattern = Pattern.compile(re);
-    return new VerticeSet(
-        vs.getGroupedArtifacts().entrySet().stream()
-            .filter(e -> pattern.matcher(e.getKey()).find())
-            .flatMap(e -> e.getValue().stream())
-            .collect(Collectors.toList()));
+    return vs.filter(a -> pattern.matcher(a.getGroup()).find());
   }
 
   public static VerticeSet add(VerticeSet vs1, VerticeSet vs2) {
-    var vertices = new HashSet<>(vs1.getArtifacts());
-    vertices.addAll(vs2.getArtifacts());
-    return new VerticeSet(vertices);
+    var result = (BitSet) vs1.getOrdinals().clone();
+    result.or(vs2.getOrdinals(vs1.getRegistry()));
+    return new VerticeSet(vs1.getRegistry(), result);
   }
 
   public static VerticeSet subtract(VerticeSet vs1, VerticeSet vs2) {
-    var vertices = new HashSet<>(vs1.getArtifacts());
-    vertices.removeAll(vs2.getArtifacts());
-    return new VerticeSet(vertices);
+    var result = (BitSet) vs1.getOrdinals().clone();
+    result.andNot(vs2.getOrdinals(vs1.getRegistry()));
+    return new VerticeSet(vs1.getRegistry(), result);
   }
 
   public static VerticeSet intersect(VerticeSet vs1, VerticeSet vs2) {
-    var vertices = new HashSet<>(vs1.getArtifacts());
-    vertices.retainAll(vs2.getArtifacts());
-    return new VerticeSet(vertices);
+    var result = (BitSet) vs1.getOrdinals().clone();
+    result.and(vs2.getOrdinals(vs1.getRegistry()));
+    return new VerticeSet(vs1.getRegistry(), result);
   }
 
   public static VerticeSet flowOut(DependencyGraph graph, VerticeSet vs) {
-    var flow = new DependencyFlow(graph);
-    return new VerticeSet(flow.flowOutgoing(vs.getArtifacts(), a -> false));
+    return flow(graph, vs, Direction.OUTGOING, Integer.MAX_VALUE);
   }
 
   public static VerticeSet flowIn(DependencyGraph graph, VerticeSet vs) {
-    var flow = new DependencyFlow(graph);
-    return new VerticeSet(flow.flowIncoming(vs.getArtifacts(), a -> false));
+    return flow(graph, vs, Direction.INCOMING, Integer.MAX_VALUE);
   }
 
   public static VerticeSet directOut(DependencyGraph graph, VerticeSet vs) {
-    var flow = new DependencyFlow(graph);
-    return new VerticeSet(flow.directOutgoing(vs.getArtifacts(), a -> false));
+    return flow(graph, vs, Direction.OUTGOING, 1);
   }
 
   public static VerticeSet directIn(DependencyGraph graph, VerticeSet vs) {
+    return flow(graph, vs, Direction.INCOMING, 1);
+  }
+
+  /**
+   * Returns artifacts on paths from vs1 to vs2, which is intersection of outgoing flow of vs1 and
+   * incoming flow of vs2. Reachability index is used if the graph has one.
+   */
+  public static VerticeSet between(DependencyGraph graph, VerticeSet vs1, VerticeSet vs2) {
+    var index = graph.getReachabilityIndex();
+    if (index.isEmpty()) {
+      return intersect(flowOut(graph, vs1), flowIn(graph, vs2));
+    }
+    var registry = graph.getRegistry();
+    var sources = vs1.getOrdinals(registry);
+    var targets = vs2.getOrdinals(registry);
+    // artifacts out of the graph are only on paths from themselves to themselves
+    var result = (BitSet) sources.clone();
+    result.and(targets);
+    var graphSources = inSnapshot(graph, sources);
+    result.andNot(graphSources);
+    result.or(index.get().between(graphSources, inSnapshot(graph, targets)));
+    return new VerticeSet(registry, result);
+  }
+
+  /**
+   * Returns artifacts of vs with artifacts reachable from them within maxDepth steps. Artifacts
+   * not present in the graph are returned as they are.
+   */
+  private static VerticeSet flow(DependencyGraph graph, VerticeSet vs, Direction direction,
+      int maxDepth) {
     var flow = new DependencyFlow(graph);
-    return new VerticeSet(flow.directIncoming(vs.getArtifacts(), a -> false));
+    var ordinals = vs.getOrdinals(graph.getRegistry());
+    var sources = inSnapshot(graph, ordinals);
+    var result = (BitSet) ordinals.clone();
+    result.or(flow.flow(sources, null, direction, maxDepth));
+    return new VerticeSet(graph.getRegistry(), result);
+  }
+
+  /**
+   * Returns ordinals which are vertices of the graph snapshot.
+   */
+  static BitSet inSnapshot(DependencyGraph graph, BitSet ordinals) {
+    var snapshot = graph.getSnapshot();
+    var result = new BitSet(snapshot.size());
+    ordinals.stream()
+        .filter(v -> v < snapshot.size() && snapshot.contains(v))
+        .forEach(result::set);
+    return result;
   }
 }
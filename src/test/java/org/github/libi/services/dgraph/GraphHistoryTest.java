@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GraphHistoryTest {
+
+  private static final int COMPILE = DependencyCategory.COMPILE_CLASSPATH.getMask();
+
+  private static final int RUNTIME = DependencyCategory.RUNTIME_CLASSPATH.getMask();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void everyVersionIsReadBackAcrossCheckpoints() {
+    var versions = new ArrayList<DependencyGraph>();
+    var v1 = new DependencyGraph();
+    var app = v1.addArtifact(new Artifact("org.app", "app"));
+    var lib = library(v1, "lib");
+    var old = library(v1, "old");
+    v1.addDependency(app, lib).setClasspaths(COMPILE);
+    v1.addDependency(app, old).setClasspaths(RUNTIME);
+    versions.add(v1);
+    var v2 = new DependencyGraph();
+    app = v2.addArtifact(new Artifact("org.app", "app"));
+    lib = library(v2, "lib");
+    var util = library(v2, "util");
+    v2.addDependency(app, lib).setClasspaths(COMPILE | RUNTIME);
+    v2.addDependency(lib, util).setClasspaths(RUNTIME);
+    versions.add(v2);
+    var v3 = new DependencyGraph();
+    app = v3.addArtifact(new Artifact("org.app", "app"));
+    lib = v3.addArtifact(new Artifact("org.lib", "lib"));
+    var api = v3.addDependency(app, lib);
+    api.setClasspaths(COMPILE);
+    api.setType(Dependency.Type.API);
+    versions.add(v3);
+    var v4 = new DependencyGraph();
+    app = v4.addArtifact(new Artifact("org.app", "app"));
+    lib = v4.addArtifact(new Artifact("org.lib", "lib"));
+    old = library(v4, "old");
+    v4.addDependency(app, lib).setClasspaths(COMPILE);
+    v4.addDependency(lib, old).setClasspaths(COMPILE | RUNTIME);
+    versions.add(v4);
+    var history = new GraphHistory(dir.toFile(), 2);
+
+    for (int i = 0; i < versions.size(); i++) {
+      assertEquals(i + 1, history.append(versions.get(i)));
+    }
+
+    for (int i = 0; i < versions.size(); i++) {
+      assertEquals(describe(versions.get(i)), describe(history.read(i + 1)));
+    }
+    assertFalse(describe(history.read(2)).contains("artifact org.lib:old true"));
+    assertTrue(describe(history.read(2)).contains("dependency org.app:app org.lib:lib 3 null"));
+    List<Boolean> checkpoints = new ArrayList<>();
+    history.getVersions().forEach(version -> checkpoints.add(version.isCheckpoint()));
+    assertEquals(List.of(true, false, true, false), checkpoints);
+    var stats = history.getDeltaStats(3);
+    assertEquals(1, stats.getRemovedArtifacts());
+    assertEquals(1, stats.getAddedArtifacts());
+    assertEquals(1, stats.getRemovedDependencies());
+    assertEquals(1, stats.getAddedDependencies());
+  }
+
+  private static Artifact library(DependencyGraph graph, String name) {
+    var artifact = graph.addArtifact(new Artifact("org.lib", name));
+    artifact.setLibrary(true);
+    return artifact;
+  }
+
+  private static Set<String> describe(DependencyGraph dependencyGraph) {
+    var graph = dependencyGraph.getGraph();
+    var description = new TreeSet<String>();
+    graph.vertexSet().forEach(artifact ->
+        description.add("artifact " + artifact.getId() + " " + artifact.isLibrary()));
+    graph.edgeSet().forEach(dependency -> description.add("dependency "
+        + graph.getEdgeSource(dependency).getId() + " " + graph.getEdgeTarget(dependency).getId()
+        + " " + dependency.getClasspaths() + " " + dependency.getType()));
+    return description;
+  }
+}
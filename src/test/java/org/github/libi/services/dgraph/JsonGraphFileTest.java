@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022. Bartłomiej Kochanowski
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ *
+ */
+
+package org.github.libi.services.dgraph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JsonGraphFileTest {
+
+  private static final int COMPILE = DependencyCategory.COMPILE_CLASSPATH.getMask();
+
+  private static final int RUNTIME = DependencyCategory.RUNTIME_CLASSPATH.getMask();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  void writtenGraphIsReadBack() throws IOException {
+    var graph = new DependencyGraph();
+    var app = graph.addArtifact(new Artifact("org.app", "app"));
+    var lib = graph.addArtifact(new Artifact("org.lib", "lib"));
+    lib.setLibrary(true);
+    var rt = graph.addArtifact(new Artifact("org.lib", "rt"));
+    rt.setLibrary(true);
+    var api = graph.addDependency(app, lib);
+    api.setType(Dependency.Type.API);
+    api.setClasspaths(COMPILE | RUNTIME);
+    graph.addDependency(app, rt).setClasspaths(RUNTIME);
+    var file = dir.resolve("graph.json").toFile();
+
+    JsonGraphFile.write(graph, file);
+    var read = JsonGraphFile.read(file);
+
+    assertEquals(3, read.getGraph().vertexSet().size());
+    assertEquals(2, read.getGraph().edgeSet().size());
+    var readApp = find(read, "org.app:app");
+    var readLib = find(read, "org.lib:lib");
+    var readRt = find(read, "org.lib:rt");
+    assertFalse(readApp.isLibrary());
+    assertTrue(readLib.isLibrary());
+    assertTrue(readRt.isLibrary());
+    var readApi = read.getDependency(readApp, readLib).orElseThrow();
+    assertEquals(Dependency.Type.API, readApi.getType());
+    assertEquals(COMPILE | RUNTIME, readApi.getClasspaths());
+    var readRuntime = read.getDependency(readApp, readRt).orElseThrow();
+    assertNull(readRuntime.getType());
+    assertEquals(RUNTIME, readRuntime.getClasspaths());
+  }
+
+  @Test
+  void writeReplacesExistingFile() throws IOException {
+    var file = dir.resolve("graph.json");
+    Files.writeString(file, "old content");
+    var graph = new DependencyGraph();
+    graph.addArtifact(new Artifact("org.app", "app"));
+
+    JsonGraphFile.write(graph, file.toFile());
+
+    assertEquals(1, JsonGraphFile.read(file.toFile()).getGraph().vertexSet().size());
+    try (var files = Files.list(dir)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  void escapedIdsAreReadBack() throws IOException {
+    var graph = new DependencyGraph();
+    var artifact = graph.addArtifact(new Artifact("org.\"quoted\\", "tab\tname"));
+    var file = dir.resolve("graph.json").toFile();
+
+    JsonGraphFile.write(graph, file);
+
+    assertEquals(artifact.getId(), JsonGraphFile.read(file).getGraph().vertexSet().iterator()
+        .next().getId());
+  }
+
+  @Test
+  void legacyProjectClasspathsAreRestored() throws IOException {
+    var file = dir.resolve("legacy.json");
+    Files.writeString(file, "{\"creator\":\"JGraphT JSON Exporter\",\"version\":\"1\",\"nodes\":["
+        + "{\"id\":\"org.app:app\",\"isLibrary\":\"false\","
+        + "\"compileDependencies\":\"org.lib:lib,org.lib:util\","
+        + "\"runtimeDependencies\":\"org.lib:lib,org.lib:util,org.lib:rt\"},"
+        + "{\"id\":\"org.lib:lib\",\"isLibrary\":\"true\"},"
+        + "{\"id\":\"org.lib:util\",\"isLibrary\":\"true\"},"
+        + "{\"id\":\"org.lib:rt\",\"isLibrary\":\"true\"}],\"edges\":["
+        + "{\"source\":\"org.app:app\",\"target\":\"org.lib:lib\",\"type\":\"API\"},"
+        + "{\"source\":\"org.lib:lib\",\"target\":\"org.lib:util\"},"
+        + "{\"source\":\"org.app:app\",\"target\":\"org.lib:rt\"}]}",
+        StandardCharsets.UTF_8);
+
+    var read = JsonGraphFile.read(file.toFile());
+
+    var app = find(read, "org.app:app");
+    var lib = find(read, "org.lib:lib");
+    var util = find(read, "org.lib:util");
+    var rt = find(read, "org.lib:rt");
+    assertTrue(lib.isLibrary());
+    assertEquals(COMPILE | RUNTIME, read.getDependency(app, lib).orElseThrow().getClasspaths());
+    assertEquals(COMPILE | RUNTIME, read.getDependency(lib, util).orElseThrow().getClasspaths());
+    assertEquals(RUNTIME, read.getDependency(app, rt).orElseThrow().getClasspaths());
+  }
+
+  @Test
+  void truncatedFileIsRejected() throws IOException {
+    var graph = new DependencyGraph();
+    var app = graph.addArtifact(new Artifact("org.app", "app\u0001"));
+    var lib = graph.addArtifact(new Artifact("org.lib", "lib"));
+    lib.setLibrary(true);
+    graph.addDependency(app, lib).setClasspaths(COMPILE);
+    var file = dir.resolve("graph.json");
+    JsonGraphFile.write(graph, file.toFile());
+    var content = Files.readString(file, StandardCharsets.UTF_8);
+
+    for (int length = 0; length < content.length(); length++) {
+      Files.writeString(file, content.substring(0, length), StandardCharsets.UTF_8);
+      assertThrows(IOException.class, () -> JsonGraphFile.read(file.toFile()));
+    }
+  }
+
+  @Test
+  void malformedFileIsRejected() throws IOException {
+    var file = dir.resolve("graph.json");
+    var malformed = new String[] {
+        "{\"nodes\":[{\"id\":\"org.app:\\xapp\"}]}",
+        "{\"nodes\":[{\"id\":\"org.app:\\u00zzapp\"}]}",
+        "{\"nodes\":[{\"id\":\"org.app:app\",\"isLibrary\":truex}]}",
+        "{\"nodes\":[{\"id\":1}]}",
+        "{\"edges\":[{\"source\":\"org.app:app\",\"target\":\"org.lib:lib\","
+            + "\"classpaths\":1.5}]}",
+        "{\"nodes\":[{\"id\":\"org.app:app\"}]}x"};
+
+    for (var content : malformed) {
+      Files.writeString(file, content, StandardCharsets.UTF_8);
+      assertThrows(IOException.class, () -> JsonGraphFile.read(file.toFile()), content);
+    }
+  }
+
+  private static Artifact find(DependencyGraph graph, String id) {
+    return graph.getGraph().vertexSet().stream()
+        .filter(artifact -> artifact.getId().equals(id))
+        .findFirst()
+        .orElseThrow();
+  }
+}